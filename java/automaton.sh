@@ -1,9 +1,17 @@
 #!/bin/sh
 
-for name in "Portrait of Dr. Gachet" "Three Studies of Lucian Freud" "Bal du moulin de la Galette" "Garçon à la pipe" "The Scream" "Flag" "Nude, Green Leaves and Bust"
-do
-	ant -Dname "${name}"
-	echo "Done for ${name}\n"
-done
+names=$(mktemp)
+cat > "${names}" <<NAMES
+Portrait of Dr. Gachet
+Three Studies of Lucian Freud
+Bal du moulin de la Galette
+Garçon à la pipe
+The Scream
+Flag
+Nude, Green Leaves and Bust
+NAMES
+
+ant -Dnames.file="${names}" batch
+rm -f "${names}"
 echo "Done !\n"
-return 0
\ No newline at end of file
+return 0
@@ -0,0 +1,51 @@
+
+package ch.infimum.olga;
+
+import java.util.Random;
+
+// Inputs shared by the benchmarks.
+class BenchmarkData
+{
+    static final double MINKOWSKI_K = 3.0;
+
+    static final PaletteTable TABLE = PaletteTable.forBitsPerChannel(6);
+
+    // palette colors of the given depth, as NBitColors produces them
+    static void randomColors(Random rng, int bitsPerChannel, int[] out)
+    {
+        int shift = 8 - bitsPerChannel;
+        for(int i = 0; i < out.length; i++)
+        {
+            int red = rng.nextInt(1 << bitsPerChannel) << shift;
+            int green = rng.nextInt(1 << bitsPerChannel) << shift;
+            int blue = rng.nextInt(1 << bitsPerChannel) << shift;
+            out[i] = (red << 16) | (green << 8) | blue;
+        }
+    }
+
+    static SliceEvaluator evaluator(String name)
+    {
+        if(name.equals("MinDistanceEvaluator")) return new MinDistanceEvaluator(TABLE);
+        if(name.equals("AvgDistanceEvaluator")) return new AvgDistanceEvaluator(TABLE);
+        if(name.equals("MinBrightnessDifferenceEvaluator")) return new MinBrightnessDifferenceEvaluator(TABLE);
+        if(name.equals("AvgBrightnessDifferenceEvaluator")) return new AvgBrightnessDifferenceEvaluator(TABLE);
+        if(name.equals("MinWarmthDiffEvaluator")) return new MinWarmthDiffEvaluator(TABLE);
+        if(name.equals("AvgWarmthDiffEvaluator")) return new AvgWarmthDiffEvaluator(TABLE);
+        if(name.equals("MinHammingDistEvaluator")) return new MinHammingDistEvaluator();
+        if(name.equals("AvgHammingDistEvaluator")) return new AvgHammingDistEvaluator();
+        if(name.equals("ChebyshevDistEvaluator")) return new ChebyshevDistEvaluator(TABLE);
+        if(name.equals("TaxiCabEvaluator")) return new TaxiCabEvaluator(TABLE);
+        if(name.equals("MinkowskiDistEvaluator")) return new MinkowskiDistEvaluator(TABLE,MINKOWSKI_K);
+        if(name.equals("DamerauDistEvaluator")) return new DamerauDistEvaluator(TABLE);
+        if(name.equals("JaccardDistEvaluator")) return new JaccardDistEvaluator(TABLE);
+        if(name.equals("ChromaDifEvaluator")) return new ChromaDifEvaluator(TABLE);
+        if(name.equals("LuminanceDifEvaluator")) return new LuminanceDifEvaluator(TABLE);
+        if(name.equals("SaturationEvaluator")) return new SaturationEvaluator(TABLE);
+        if(name.equals("LumaEvaluator")) return new LumaEvaluator(TABLE);
+        if(name.equals("HellingerDistEvaluator")) return new HellingerDistEvaluator(TABLE);
+        if(name.equals("KullbackDistEvaluator")) return new KullbackDistEvaluator(TABLE);
+        if(name.equals("HueEvaluator")) return new HueEvaluator(TABLE);
+
+        throw new IllegalArgumentException("unknown evaluator " + name);
+    }
+}
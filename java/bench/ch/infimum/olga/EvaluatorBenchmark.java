@@ -0,0 +1,102 @@
+
+package ch.infimum.olga;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// One evaluation per open pixel over CANDIDATES frontier slot arrays laid out
+// like Frontier does, each with the given number of filled neighbours, once
+// with RGB colors and once with the palette indices generate() works on.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluatorBenchmark
+{
+    static final int CANDIDATES = 1024;
+
+    @Param({"MinDistanceEvaluator", "AvgDistanceEvaluator", "MinBrightnessDifferenceEvaluator",
+            "AvgBrightnessDifferenceEvaluator", "MinWarmthDiffEvaluator", "AvgWarmthDiffEvaluator",
+            "MinHammingDistEvaluator", "AvgHammingDistEvaluator", "ChebyshevDistEvaluator",
+            "TaxiCabEvaluator", "MinkowskiDistEvaluator", "DamerauDistEvaluator", "JaccardDistEvaluator",
+            "ChromaDifEvaluator", "LuminanceDifEvaluator", "SaturationEvaluator", "LumaEvaluator",
+            "HellingerDistEvaluator", "KullbackDistEvaluator", "HueEvaluator"})
+    String evaluatorName;
+
+    @Param({"1", "2", "4", "8"})
+    int neighbours;
+
+    SliceEvaluator evaluator;
+    int[] colors = new int[CANDIDATES];
+    int[] slots = new int[CANDIDATES * Frontier.SLOTS];
+
+    IndexedEvaluator indexed;
+    int[] colorIndices = new int[CANDIDATES];
+    int[] indexSlots = new int[CANDIDATES * Frontier.SLOTS];
+
+    @Setup
+    public void setup()
+    {
+        evaluator = BenchmarkData.evaluator(evaluatorName);
+
+        Random rng = new Random(3);
+        BenchmarkData.randomColors(rng,6,colors);
+
+        int[] neighbourColors = new int[neighbours];
+        for(int i = 0; i < CANDIDATES; i++)
+        {
+            BenchmarkData.randomColors(rng,6,neighbourColors);
+            slots[i * Frontier.SLOTS] = neighbours;
+            System.arraycopy(neighbourColors,0,slots,i * Frontier.SLOTS + 1,neighbours);
+        }
+
+        indexed = (IndexedEvaluator) evaluator;
+        NBitColors palette = BenchmarkData.TABLE.palette();
+        for(int i = 0; i < CANDIDATES; i++)
+        {
+            colorIndices[i] = palette.index(colors[i]);
+        }
+        for(int i = 0; i < slots.length; i++)
+        {
+            indexSlots[i] = (i % Frontier.SLOTS == 0) ? slots[i] : palette.index(slots[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CANDIDATES)
+    public void evaluate(Blackhole bh)
+    {
+        for(int i = 0; i < CANDIDATES; i++)
+        {
+            int base = i * Frontier.SLOTS;
+            bh.consume(evaluator.evaluate(colors[i],slots,base + 1,slots[base]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CANDIDATES)
+    public void evaluateIndices(Blackhole bh)
+    {
+        for(int i = 0; i < CANDIDATES; i++)
+        {
+            int base = i * Frontier.SLOTS;
+            bh.consume(indexed.evaluateIndices(colorIndices[i],indexSlots,base + 1,indexSlots[base]));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+
+package ch.infimum.olga;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Whole generate() runs, PNG encoding included. MinDistanceEvaluator goes
+// through the octree, MinHammingDistEvaluator through the frontier scan.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class GenerationBenchmark
+{
+    @Param({"4", "5", "6"})
+    int bitsPerChannel;
+
+    @Param({"true", "false"})
+    boolean strictFrame;
+
+    @Param({"MinDistanceEvaluator", "MinHammingDistEvaluator"})
+    String evaluatorName;
+
+    File output;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        output = File.createTempFile("olga-bench",".png");
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        output.delete();
+    }
+
+    @Benchmark
+    public void generate() throws IOException
+    {
+        ImageGenerator generator = new ImageGenerator(bitsPerChannel,output.getPath(),new Random(42),
+                                                      BenchmarkData.evaluator(evaluatorName),strictFrame);
+        generator.generate();
+    }
+}
@@ -0,0 +1,200 @@
+
+package ch.infimum.olga;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// One call per palette color pair, over PAIRS random 6 bit colors.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NBitColorsBenchmark
+{
+    static final int PAIRS = 1024;
+
+    int[] first = new int[PAIRS];
+    int[] second = new int[PAIRS];
+
+    @Setup
+    public void setup()
+    {
+        BenchmarkData.randomColors(new Random(1),6,first);
+        BenchmarkData.randomColors(new Random(2),6,second);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void euclideanDistance(Blackhole bh)
+    {
+        for(int i = 0; i < PAIRS; i++)
+        {
+            bh.consume(NBitColors.euclideanDistance(first[i],second[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void hammingDist(Blackhole bh)
+    {
+        for(int i = 0; i < PAIRS; i++)
+        {
+            bh.consume(NBitColors.hammingDist(first[i],second[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void chebyshevDist(Blackhole bh)
+    {
+        for(int i = 0; i < PAIRS; i++)
+        {
+            bh.consume(NBitColors.chebyshevDist(first[i],second[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void taxiCab(Blackhole bh)
+    {
+        for(int i = 0; i < PAIRS; i++)
+        {
+            bh.consume(NBitColors.taxiCab(first[i],second[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void minkowskiDist(Blackhole bh)
+    {
+        for(int i = 0; i < PAIRS; i++)
+        {
+            bh.consume(NBitColors.minkowskiDist(first[i],second[i],BenchmarkData.MINKOWSKI_K));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void jaccardDist(Blackhole bh)
+    {
+        for(int i = 0; i < PAIRS; i++)
+        {
+            bh.consume(NBitColors.jaccardDist(first[i],second[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void damerauDist(Blackhole bh)
+    {
+        for(int i = 0; i < PAIRS; i++)
+        {
+            bh.consume(NBitColors.damerauDist(first[i],second[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void hellingerDist(Blackhole bh)
+    {
+        for(int i = 0; i < PAIRS; i++)
+        {
+            bh.consume(NBitColors.hellingerDist(first[i],second[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void kullbackDist(Blackhole bh)
+    {
+        for(int i = 0; i < PAIRS; i++)
+        {
+            bh.consume(NBitColors.kullbackDist(first[i],second[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void brightness(Blackhole bh)
+    {
+        for(int i = 0; i < PAIRS; i++)
+        {
+            bh.consume(NBitColors.brightness(first[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void warmth(Blackhole bh)
+    {
+        for(int i = 0; i < PAIRS; i++)
+        {
+            bh.consume(NBitColors.warmth(first[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void luminance(Blackhole bh)
+    {
+        for(int i = 0; i < PAIRS; i++)
+        {
+            bh.consume(NBitColors.luminance(first[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void luma(Blackhole bh)
+    {
+        for(int i = 0; i < PAIRS; i++)
+        {
+            bh.consume(NBitColors.luma(first[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void chroma(Blackhole bh)
+    {
+        for(int i = 0; i < PAIRS; i++)
+        {
+            bh.consume(NBitColors.chroma(first[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void saturation(Blackhole bh)
+    {
+        for(int i = 0; i < PAIRS; i++)
+        {
+            bh.consume(NBitColors.saturation(first[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void hue(Blackhole bh)
+    {
+        for(int i = 0; i < PAIRS; i++)
+        {
+            bh.consume(NBitColors.hue(first[i]));
+        }
+    }
+}
@@ -1,13 +1,17 @@
 #!/bin/sh
 
-for name in "The Card Players" "No. 5, 1948" "Woman III" "Le Rêve" "Portrait of Adele Bloch-Bauer I"
-do
-    echo "doing ${name}"
-    ant -Dname="${name}" run
-    echo "done ${name}"
-done
+names=$(mktemp)
+cat > "${names}" <<NAMES
+The Card Players
+No. 5, 1948
+Woman III
+Le Rêve
+Portrait of Adele Bloch-Bauer I
+NAMES
+
+ant -Dnames.file="${names}" batch
+rm -f "${names}"
 
 echo "done all"
 
 return 0
-
@@ -0,0 +1,124 @@
+package ch.infimum.olga;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Renders several names in one JVM, each exactly as Main would. Usage:
+//
+//   BatchMain [-threads n] [-file names.txt] [name ...]
+//
+// names.txt holds one name per line. At most n images are generated at the
+// same time, as many as there are cores if n is not given or 0. Their frontier
+// scans share one pool, and the palette tables are shared through
+// PaletteTable.
+public class BatchMain
+{
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        int threads = 0;
+        List<String> names = new ArrayList<String>();
+
+        for(int i = 0; i < args.length; i++)
+        {
+            if(args[i].equals("-threads") && i + 1 < args.length)
+            {
+                threads = Integer.parseInt(args[++i]);
+            }
+            else if(args[i].equals("-file") && i + 1 < args.length)
+            {
+                names.addAll(readNames(args[++i]));
+            }
+            else
+            {
+                names.add(args[i]);
+            }
+        }
+
+        if(threads <= 0)
+        {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+
+        if(names.isEmpty())
+        {
+            System.out.println("please provide some strings or a file of them as arguments.");
+            return;
+        }
+
+        final ForkJoinPool scanPool = new ForkJoinPool();
+        ExecutorService jobs = Executors.newFixedThreadPool(Math.min(threads,names.size()));
+
+        long start = System.nanoTime();
+
+        List<Future<Long>> timings = new ArrayList<Future<Long>>();
+        for(final String name : names)
+        {
+            timings.add(jobs.submit(new Callable<Long>()
+            {
+                public Long call() throws IOException
+                {
+                    long begin = System.nanoTime();
+
+                    ImageGenerator generator = Main.generator(name);
+                    generator.setScanPool(scanPool);
+                    generator.generate();
+
+                    return System.nanoTime() - begin;
+                }
+            }));
+        }
+
+        for(int i = 0; i < names.size(); i++)
+        {
+            try
+            {
+                System.out.println("done " + names.get(i) + " in " + timings.get(i).get() / 1000000 + " ms");
+            }
+            catch(ExecutionException e)
+            {
+                System.out.println("failed " + names.get(i));
+                e.getCause().printStackTrace();
+            }
+        }
+
+        jobs.shutdown();
+        scanPool.shutdown();
+
+        System.out.println("done all " + names.size() + " in " + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+    private static List<String> readNames(String fileName) throws IOException
+    {
+        List<String> names = new ArrayList<String>();
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(fileName),StandardCharsets.UTF_8));
+        try
+        {
+            String line;
+            while((line = in.readLine()) != null)
+            {
+                if(!line.trim().isEmpty())
+                {
+                    names.add(line);
+                }
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+
+        return names;
+    }
+}
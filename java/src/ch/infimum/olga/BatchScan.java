@@ -0,0 +1,143 @@
+
+package ch.infimum.olga;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+// Frontier scan for several colors at once, used by the batched placement
+// mode of ImageGenerator. Every open pixel is read once and evaluated for all
+// colors of the batch; candidates are packed like in ParallelScan, one long
+// per color. The evaluator calls are counted in evaluations like there.
+public class BatchScan extends RecursiveTask<long[]>
+{
+    private static final long serialVersionUID = 1L;
+
+    private static final int CHUNK = 1024;
+
+    private IndexedEvaluator evaluator;
+    private Frontier openSet;
+    private int[] colors;
+    private int count;
+    private int from;
+    private int to;
+    private LongAdder evaluations;
+
+    private BatchScan(IndexedEvaluator evaluator, Frontier openSet, int[] colors, int count, int from, int to, LongAdder evaluations)
+    {
+        this.evaluator = evaluator;
+        this.openSet = openSet;
+        this.colors = colors;
+        this.count = count;
+        this.from = from;
+        this.to = to;
+        this.evaluations = evaluations;
+    }
+
+    // Best candidates for the first count entries of colors. Scans on the
+    // calling thread if pool is null or the work is too small to split.
+    public static long[] best(ForkJoinPool pool, IndexedEvaluator evaluator, Frontier openSet, int[] colors, int count,
+                              LongAdder evaluations)
+    {
+        BatchScan task = new BatchScan(evaluator,openSet,colors,count,0,openSet.size(),evaluations);
+        if(pool == null || (long) openSet.size() * count < ParallelScan.THRESHOLD)
+        {
+            return task.scan();
+        }
+
+        return pool.invoke(task);
+    }
+
+    @Override
+    protected long[] compute()
+    {
+        if(to - from <= CHUNK)
+        {
+            return scan();
+        }
+
+        int middle = (from + to) >>> 1;
+        BatchScan left = new BatchScan(evaluator,openSet,colors,count,from,middle,evaluations);
+        BatchScan right = new BatchScan(evaluator,openSet,colors,count,middle,to,evaluations);
+        left.fork();
+        long[] r = right.compute();
+        long[] l = left.join();
+
+        for(int k = 0; k < count; k++)
+        {
+            r[k] = Math.min(l[k],r[k]);
+        }
+
+        return r;
+    }
+
+    // Same pruning as the scan in ImageGenerator, per color of the batch.
+    private long[] scan()
+    {
+        BoundedEvaluator bounded = evaluator instanceof BoundedEvaluator ? (BoundedEvaluator) evaluator : null;
+        boolean boxed = openSet.bounded();
+
+        long[] best = new long[count];
+        int[] bestValue = new int[count];
+        for(int k = 0; k < count; k++)
+        {
+            best[k] = ParallelScan.NONE;
+            bestValue[k] = Integer.MAX_VALUE;
+        }
+
+        long evaluated = 0;
+        int[] slots = openSet.slots();
+        int stride = openSet.stride();
+        for(int i = from; i < to; i++)
+        {
+            if(boxed && i % Frontier.BLOCK == 0)
+            {
+                boolean skip = true;
+                for(int k = 0; k < count && skip; k++)
+                {
+                    skip = openSet.blockLowerBound(colors[k],i / Frontier.BLOCK) > bestValue[k];
+                }
+                if(skip)
+                {
+                    i += Frontier.BLOCK - 1;
+                    continue;
+                }
+            }
+
+            int base = i * stride;
+            int pixel = openSet.pixel(i);
+            for(int k = 0; k < count; k++)
+            {
+                if(boxed && openSet.lowerBound(colors[k],i) > bestValue[k])
+                {
+                    continue;
+                }
+
+                evaluated++;
+
+                int val;
+                if(bounded != null)
+                {
+                    val = bounded.evaluateBounded(colors[k],slots,base + 1,slots[base],bestValue[k]);
+                }
+                else
+                {
+                    val = evaluator.evaluateIndices(colors[k],slots,base + 1,slots[base]);
+                }
+
+                if(val != Integer.MAX_VALUE)
+                {
+                    long packed = ((long) val << 32) | pixel;
+                    if(packed < best[k])
+                    {
+                        best[k] = packed;
+                        bestValue[k] = val;
+                    }
+                }
+            }
+        }
+
+        evaluations.add(evaluated);
+        return best;
+    }
+}
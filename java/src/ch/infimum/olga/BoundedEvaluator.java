@@ -0,0 +1,9 @@
+package ch.infimum.olga;
+
+// Indexed evaluators that can stop as soon as a candidate can not come in at
+// or below bound. The result has to be exact when it is at most bound; above
+// bound any value above bound will do.
+public interface BoundedEvaluator extends IndexedEvaluator
+{
+    public int evaluateBounded(int colorIndex, int[] neighbouringIndices, int offset, int count, int bound);
+}
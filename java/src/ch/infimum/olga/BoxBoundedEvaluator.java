@@ -0,0 +1,20 @@
+package ch.infimum.olga;
+
+// Evaluators whose value is the minimum over the neighbours of a distance that
+// is bounded from below by where the neighbours lie in some space of up to
+// three int axes. Frontier keeps, per open pixel and per block of them, the
+// box spanned by the neighbours' coordinates, and the scan skips whatever
+// lowerBound() says can not beat its current best.
+//
+// A box is six ints from offset: min and max of axis 0, 1 and 2. A box
+// without neighbours has min EMPTY_MIN and max EMPTY_MAX on every axis, so
+// coordinates have to stay well within those.
+public interface BoxBoundedEvaluator extends IndexedEvaluator
+{
+    public static final int EMPTY_MIN = 1 << 30;
+    public static final int EMPTY_MAX = -(1 << 30);
+
+    public int coordinate(int colorIndex, int axis);
+
+    public int lowerBound(int colorIndex, int[] boxes, int offset);
+}
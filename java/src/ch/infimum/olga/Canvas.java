@@ -0,0 +1,15 @@
+
+package ch.infimum.olga;
+
+// One int per pixel of a width x height image, addressed by y*width+x.
+// Unwritten pixels read as 0.
+public interface Canvas
+{
+    public int width();
+
+    public int height();
+
+    public int get(int pixel);
+
+    public void set(int pixel, int value);
+}
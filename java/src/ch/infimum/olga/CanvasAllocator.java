@@ -0,0 +1,12 @@
+
+package ch.infimum.olga;
+
+// Where the large per run structures of ImageGenerator live: the canvas, the
+// closed bitmap, the color permutation, the frontier position index and the
+// color index.
+public interface CanvasAllocator
+{
+    // a zeroed width x height canvas able to hold values from 0 to maxValue,
+    // or any int when maxValue is -1
+    public Canvas allocate(int width, int height, int maxValue);
+}
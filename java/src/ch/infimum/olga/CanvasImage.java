@@ -0,0 +1,169 @@
+
+package ch.infimum.olga;
+
+import java.awt.Image;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Vector;
+
+// A canvas of palette indices seen as an RGB image, without copying it.
+// Pixels are expanded to RGB only for the region asked for, which lets
+// ImageIO write a PNG one row at a time.
+public class CanvasImage implements RenderedImage
+{
+    private static final int[] MASKS = {NBitColors.RED_MASK, NBitColors.GREEN_MASK, NBitColors.BLUE_MASK};
+
+    private Canvas canvas;
+    private NBitColors palette;
+    private ColorModel colorModel = new DirectColorModel(24,NBitColors.RED_MASK,NBitColors.GREEN_MASK,NBitColors.BLUE_MASK);
+
+    public CanvasImage(Canvas canvas, NBitColors palette)
+    {
+        this.canvas = canvas;
+        this.palette = palette;
+    }
+
+    public Raster getData(Rectangle rect)
+    {
+        WritableRaster raster = Raster.createPackedRaster(DataBuffer.TYPE_INT,rect.width,rect.height,MASKS,new Point(rect.x,rect.y));
+        copy(raster,rect);
+        return raster;
+    }
+
+    public WritableRaster copyData(WritableRaster raster)
+    {
+        if(raster == null)
+        {
+            raster = colorModel.createCompatibleWritableRaster(getWidth(),getHeight());
+        }
+
+        Rectangle rect = raster.getBounds().intersection(new Rectangle(0,0,getWidth(),getHeight()));
+        int[] row = new int[rect.width];
+        for(int y = rect.y; y < rect.y + rect.height; y++)
+        {
+            for(int x = 0; x < rect.width; x++)
+            {
+                row[x] = palette.color(canvas.get(y * canvas.width() + rect.x + x));
+            }
+            raster.setDataElements(rect.x,y,rect.width,1,row);
+        }
+
+        return raster;
+    }
+
+    private void copy(WritableRaster raster, Rectangle rect)
+    {
+        int[] rgb = ((DataBufferInt) raster.getDataBuffer()).getData();
+        int i = 0;
+        for(int y = rect.y; y < rect.y + rect.height; y++)
+        {
+            for(int x = rect.x; x < rect.x + rect.width; x++)
+            {
+                rgb[i++] = palette.color(canvas.get(y * canvas.width() + x));
+            }
+        }
+    }
+
+    public Raster getData()
+    {
+        return getData(new Rectangle(0,0,getWidth(),getHeight()));
+    }
+
+    public Raster getTile(int tileX, int tileY)
+    {
+        return getData();
+    }
+
+    public ColorModel getColorModel()
+    {
+        return colorModel;
+    }
+
+    public SampleModel getSampleModel()
+    {
+        return colorModel.createCompatibleSampleModel(getWidth(),getHeight());
+    }
+
+    public int getWidth()
+    {
+        return canvas.width();
+    }
+
+    public int getHeight()
+    {
+        return canvas.height();
+    }
+
+    public int getMinX()
+    {
+        return 0;
+    }
+
+    public int getMinY()
+    {
+        return 0;
+    }
+
+    public int getNumXTiles()
+    {
+        return 1;
+    }
+
+    public int getNumYTiles()
+    {
+        return 1;
+    }
+
+    public int getMinTileX()
+    {
+        return 0;
+    }
+
+    public int getMinTileY()
+    {
+        return 0;
+    }
+
+    public int getTileWidth()
+    {
+        return getWidth();
+    }
+
+    public int getTileHeight()
+    {
+        return getHeight();
+    }
+
+    public int getTileGridXOffset()
+    {
+        return 0;
+    }
+
+    public int getTileGridYOffset()
+    {
+        return 0;
+    }
+
+    public Vector<RenderedImage> getSources()
+    {
+        return null;
+    }
+
+    public Object getProperty(String name)
+    {
+        return Image.UndefinedProperty;
+    }
+
+    public String[] getPropertyNames()
+    {
+        return null;
+    }
+}
@@ -0,0 +1,47 @@
+package ch.infimum.olga;
+
+// A width x height window of canvas whose top left corner is at (x, y),
+// addressed like a canvas of its own. Regions that do not overlap can be
+// written from different threads.
+public class CanvasRegion implements Canvas
+{
+    private Canvas canvas;
+    private int x;
+    private int y;
+    private int width;
+    private int height;
+
+    public CanvasRegion(Canvas canvas, int x, int y, int width, int height)
+    {
+        this.canvas = canvas;
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
+    public int width()
+    {
+        return width;
+    }
+
+    public int height()
+    {
+        return height;
+    }
+
+    public int get(int pixel)
+    {
+        return canvas.get(position(pixel));
+    }
+
+    public void set(int pixel, int value)
+    {
+        canvas.set(position(pixel),value);
+    }
+
+    private int position(int pixel)
+    {
+        return (y + pixel / width) * canvas.width() + x + pixel % width;
+    }
+}
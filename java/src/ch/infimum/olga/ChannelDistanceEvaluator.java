@@ -0,0 +1,10 @@
+
+package ch.infimum.olga;
+
+// Evaluators whose value is the minimum over the neighbours of a metric that
+// only depends on the per channel differences and grows with each of them.
+// Such placements can be answered by a nearest neighbour query in RGB space.
+public interface ChannelDistanceEvaluator extends SliceEvaluator
+{
+    public int channelDistance(int dRed, int dGreen, int dBlue);
+}
@@ -0,0 +1,255 @@
+
+package ch.infimum.olga;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Random;
+
+// Placement journal of a generation. The header holds the generation
+// parameters, including the kind of color permutation, the neighbour offsets,
+// the batch size and the sampling, and the rng as it was before the colors
+// were shuffled, followed by one int per placement: the pixel the next color
+// of the permutation went to. Everything else the generator keeps (the
+// permutation, the canvas, the closed set, the frontier, the color index and
+// the rng after the shuffle) follows from replaying those pixels, so a
+// checkpoint only costs four bytes per placement.
+//
+// Every interval placements the journal is flushed and fsynced, on the
+// generating thread, so that a crash loses at most interval placements. The
+// sync waits for the disk, so the interval should be large enough for that
+// to disappear next to the placements in between.
+public class Checkpoint
+{
+    private static final int MAGIC = 0x4F4C4741;
+    private static final int VERSION = 3;
+
+    private File file;
+    private int interval;
+
+    private long headerLength;
+    private int recorded;
+    private DataInputStream replay;
+
+    private FileOutputStream out;
+    private DataOutputStream journal;
+    private int unflushed;
+
+    public Checkpoint(File file, int interval)
+    {
+        this.file = file;
+        this.interval = interval;
+    }
+
+    // Starts a new journal, or picks up the one a previous run left behind.
+    // Returns the rng the generation has to shuffle with: rng itself for a new
+    // journal, the recorded one when resuming.
+    public Random open(int bitsPerChannel, int width, int height, boolean strictFrame, String evaluator, String order,
+                       Neighbourhood neighbourhood, int batchSize, int samples, int beam, Random rng)
+    {
+        try
+        {
+            if(file.length() > 0)
+            {
+                return resume(bitsPerChannel,width,height,strictFrame,evaluator,order,neighbourhood,batchSize,samples,beam);
+            }
+
+            DataOutputStream header = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            header.write(parameters(bitsPerChannel,width,height,strictFrame,evaluator,order,neighbourhood,batchSize,samples,beam));
+
+            byte[] state = serialize(rng);
+            header.writeInt(state.length);
+            header.write(state);
+            header.close();
+
+            headerLength = file.length();
+            recorded = 0;
+
+            return rng;
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        catch(ClassNotFoundException e)
+        {
+            throw new IllegalStateException("checkpoint " + file + " holds an unknown rng",e);
+        }
+    }
+
+    // Number of placements a previous run got through.
+    public int recorded()
+    {
+        return recorded;
+    }
+
+    // The pixel of the next recorded placement, in permutation order.
+    public int next()
+    {
+        try
+        {
+            return replay.readInt();
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void placed(int pixel)
+    {
+        try
+        {
+            if(journal == null)
+            {
+                append();
+            }
+
+            journal.writeInt(pixel);
+
+            if(++unflushed >= interval)
+            {
+                journal.flush();
+                out.getFD().sync();
+                unflushed = 0;
+            }
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void close()
+    {
+        try
+        {
+            if(replay != null)
+            {
+                replay.close();
+                replay = null;
+            }
+            if(journal != null)
+            {
+                journal.close();
+                journal = null;
+            }
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Called once the image is out; there is nothing left to resume.
+    public void delete()
+    {
+        close();
+        file.delete();
+    }
+
+    private Random resume(int bitsPerChannel, int width, int height, boolean strictFrame, String evaluator, String order,
+                          Neighbourhood neighbourhood, int batchSize, int samples, int beam) throws IOException, ClassNotFoundException
+    {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+        byte[] expected = parameters(bitsPerChannel,width,height,strictFrame,evaluator,order,neighbourhood,batchSize,samples,beam);
+        byte[] actual = new byte[expected.length];
+        in.readFully(actual);
+        if(!Arrays.equals(expected,actual))
+        {
+            in.close();
+            throw new IllegalStateException("checkpoint " + file + " belongs to a different generation");
+        }
+
+        byte[] state = new byte[in.readInt()];
+        in.readFully(state);
+
+        headerLength = expected.length + 4 + state.length;
+
+        // a run killed halfway through a write leaves a partial last record
+        recorded = (int) ((file.length() - headerLength) / 4);
+        replay = in;
+
+        ObjectInputStream rng = new ObjectInputStream(new ByteArrayInputStream(state));
+        try
+        {
+            return (Random) rng.readObject();
+        }
+        finally
+        {
+            rng.close();
+        }
+    }
+
+    private void append() throws IOException
+    {
+        if(replay != null)
+        {
+            replay.close();
+            replay = null;
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(file,"rw");
+        try
+        {
+            raf.setLength(headerLength + 4L * recorded);
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        out = new FileOutputStream(file,true);
+        journal = new DataOutputStream(new BufferedOutputStream(out,1 << 16));
+    }
+
+    private static byte[] parameters(int bitsPerChannel, int width, int height, boolean strictFrame, String evaluator, String order,
+                                     Neighbourhood neighbourhood, int batchSize, int samples, int beam) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(bitsPerChannel);
+        out.writeInt(width);
+        out.writeInt(height);
+        out.writeBoolean(strictFrame);
+        out.writeUTF(evaluator);
+        out.writeUTF(order);
+        out.writeInt(neighbourhood.size());
+        for(int i = 0; i < neighbourhood.size(); i++)
+        {
+            out.writeInt(neighbourhood.dx(i));
+            out.writeInt(neighbourhood.dy(i));
+        }
+        out.writeInt(batchSize);
+        out.writeInt(samples);
+        out.writeInt(beam);
+        out.close();
+
+        return bytes.toByteArray();
+    }
+
+    private static byte[] serialize(Random rng) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(rng);
+        out.close();
+
+        return bytes.toByteArray();
+    }
+}
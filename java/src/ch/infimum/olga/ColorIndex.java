@@ -0,0 +1,23 @@
+package ch.infimum.olga;
+
+// Placed palette colors, each keyed by the smallest open pixel next to it, that
+// answer where the next color goes without scanning the frontier. Works for
+// evaluators whose value is the minimum over the neighbours of a distance
+// between two colors: the best open pixel is then the smallest key among the
+// colors closest to the one being placed.
+//
+// ImageGenerator keeps the keys up to date, the implementations only know
+// about the distance.
+public interface ColorIndex
+{
+    public static final int NO_KEY = Integer.MAX_VALUE;
+
+    public void setKey(int index, int key);
+
+    // the smallest key among the keyed colors closest to palette color index,
+    // NO_KEY if there is none
+    public int nearest(int index);
+
+    // Number of distance evaluations or tree nodes visited by nearest() so far.
+    public long evaluations();
+}
@@ -0,0 +1,168 @@
+
+package ch.infimum.olga;
+
+// Octree over the palette of NBitColors, the ColorIndex of
+// ChannelDistanceEvaluators. Every palette color can carry a key
+// and nodes keep the minimum key of their subtree, so that the search can skip
+// empty subtrees and subtrees that can not beat the current best on a tie.
+//
+// nearest(index) returns the smallest key among the colors closest to the
+// palette color index, distance being measured by the given
+// ChannelDistanceEvaluator on 8 bit channel values.
+public class ColorOctree implements ColorIndex
+{
+    private int bitsPerChannel;
+    private int channelMask;
+    private int additionalShift;
+    private ChannelDistanceEvaluator metric;
+
+    // keys[level].get((r << 2*level) | (g << level) | b)
+    private Canvas[] keys;
+
+    private int queryRed;
+    private int queryGreen;
+    private int queryBlue;
+    private int bestDistance;
+    private int bestKey;
+
+    private long evaluations;
+
+    public ColorOctree(int bitsPerChannel, ChannelDistanceEvaluator metric)
+    {
+        this(bitsPerChannel,metric,new HeapCanvasAllocator());
+    }
+
+    public ColorOctree(int bitsPerChannel, ChannelDistanceEvaluator metric, CanvasAllocator allocator)
+    {
+        this.bitsPerChannel = bitsPerChannel;
+        this.channelMask = (1 << bitsPerChannel) - 1;
+        this.additionalShift = 8 - bitsPerChannel;
+        this.metric = metric;
+
+        keys = new Canvas[bitsPerChannel + 1];
+        for(int level = 0; level <= bitsPerChannel; level++)
+        {
+            int nodes = 1 << (3 * level);
+            keys[level] = allocator.allocate(nodes,1,-1);
+            for(int i = 0; i < nodes; i++)
+            {
+                keys[level].set(i,NO_KEY);
+            }
+        }
+    }
+
+    public void setKey(int index, int key)
+    {
+        int red = index >> (2 * bitsPerChannel);
+        int green = (index >> bitsPerChannel) & channelMask;
+        int blue = index & channelMask;
+
+        int level = bitsPerChannel;
+        if(keys[level].get(node(level,red,green,blue)) == key)
+        {
+            return;
+        }
+        keys[level].set(node(level,red,green,blue),key);
+
+        while(level > 0)
+        {
+            red >>= 1;
+            green >>= 1;
+            blue >>= 1;
+
+            Canvas children = keys[level];
+            int min = NO_KEY;
+            for(int child = 0; child < 8; child++)
+            {
+                int k = children.get(node(level,2*red + (child >> 2),2*green + ((child >> 1) & 1),2*blue + (child & 1)));
+                if(k < min)
+                {
+                    min = k;
+                }
+            }
+
+            level--;
+            keys[level].set(node(level,red,green,blue),min);
+        }
+    }
+
+    public int nearest(int index)
+    {
+        queryRed = (index >> (2 * bitsPerChannel)) << additionalShift;
+        queryGreen = ((index >> bitsPerChannel) & channelMask) << additionalShift;
+        queryBlue = (index & channelMask) << additionalShift;
+        bestDistance = Integer.MAX_VALUE;
+        bestKey = NO_KEY;
+
+        search(0,0,0,0);
+
+        return bestKey;
+    }
+
+    public long evaluations()
+    {
+        return evaluations;
+    }
+
+    private void search(int level, int red, int green, int blue)
+    {
+        int key = keys[level].get(node(level,red,green,blue));
+        if(key == NO_KEY)
+        {
+            return;
+        }
+
+        int span = bitsPerChannel - level;
+        evaluations++;
+        int distance = metric.channelDistance(axisDistance(queryRed,red,span),
+                                              axisDistance(queryGreen,green,span),
+                                              axisDistance(queryBlue,blue,span));
+
+        if(distance > bestDistance || (distance == bestDistance && key >= bestKey))
+        {
+            return;
+        }
+
+        if(span == 0)
+        {
+            bestDistance = distance;
+            bestKey = key;
+            return;
+        }
+
+        // start with the child containing the query, then move away from it
+        int preferred = (half(queryRed,red,span) << 2) | (half(queryGreen,green,span) << 1) | half(queryBlue,blue,span);
+        for(int i = 0; i < 8; i++)
+        {
+            int child = preferred ^ i;
+            search(level + 1,2*red + (child >> 2),2*green + ((child >> 1) & 1),2*blue + (child & 1));
+        }
+    }
+
+    private int axisDistance(int query, int prefix, int span)
+    {
+        int low = (prefix << span) << additionalShift;
+        int high = (((prefix + 1) << span) - 1) << additionalShift;
+
+        if(query < low)
+        {
+            return low - query;
+        }
+        if(query > high)
+        {
+            return query - high;
+        }
+        return 0;
+    }
+
+    private int half(int query, int prefix, int span)
+    {
+        int middle = ((2*prefix + 1) << (span - 1)) << additionalShift;
+        return query >= middle ? 1 : 0;
+    }
+
+    private static int node(int level, int red, int green, int blue)
+    {
+        return (red << (2 * level)) | (green << level) | blue;
+    }
+}
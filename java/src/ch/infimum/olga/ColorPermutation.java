@@ -0,0 +1,10 @@
+package ch.infimum.olga;
+
+// The order in which the generator places the palette: position -> palette
+// index, a bijection of 0 .. size()-1.
+public interface ColorPermutation
+{
+    public int size();
+
+    public int get(int position);
+}
@@ -0,0 +1,23 @@
+
+package ch.infimum.olga;
+
+// The scalar color properties of NBitColors.
+public enum ColorProperty
+{
+    BRIGHTNESS, LUMINANCE, LUMA, CHROMA, SATURATION, WARMTH, HUE;
+
+    public int of(int color)
+    {
+        switch(this)
+        {
+            case BRIGHTNESS: return NBitColors.brightness(color);
+            case LUMINANCE: return NBitColors.luminance(color);
+            case LUMA: return NBitColors.luma(color);
+            case CHROMA: return NBitColors.chroma(color);
+            case SATURATION: return NBitColors.saturation(color);
+            case WARMTH: return NBitColors.warmth(color);
+            case HUE: return NBitColors.hue(color);
+            default: throw new AssertionError(this);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package ch.infimum.olga;
+
+import java.util.concurrent.ForkJoinPool;
+
+// Renders name as Main would, once color by color and once for every given
+// batch size, and reports how far each batched image is from the first one:
+// the share of pixels holding another color and the mean RGB distance between
+// the colors on the same pixel. The first image is rendered twice, only the
+// second time is timed. Usage:
+//
+//   DriftReport name batchSize ...
+public class DriftReport
+{
+    public static void main(String[] args)
+    {
+        if(args.length < 2)
+        {
+            System.out.println("please provide a name and some batch sizes as arguments.");
+            return;
+        }
+
+        String name = args[0];
+        ForkJoinPool scanPool = new ForkJoinPool();
+
+        // untimed, so JIT compilation does not land on the reference
+        int[] expected = render(name,1,scanPool).pixels();
+
+        long start = System.nanoTime();
+        render(name,1,scanPool);
+        long referenceNanos = System.nanoTime() - start;
+
+        System.out.println(String.format("%6s %8s %8s %9s %11s","batch","ms","speedup","changed","mean error"));
+        System.out.println(String.format("%6d %8d %8.2f %8.2f%% %11.2f",1,referenceNanos / 1000000,1.0,0.0,0.0));
+
+        for(int i = 1; i < args.length; i++)
+        {
+            int batchSize = Integer.parseInt(args[i]);
+
+            start = System.nanoTime();
+            int[] actual = render(name,batchSize,scanPool).pixels();
+            long nanos = System.nanoTime() - start;
+
+            long changed = 0;
+            double error = 0;
+            for(int p = 0; p < expected.length; p++)
+            {
+                if(expected[p] != actual[p])
+                {
+                    changed++;
+                    error += Math.sqrt(NBitColors.euclideanDistance(expected[p],actual[p]));
+                }
+            }
+
+            System.out.println(String.format("%6d %8d %8.2f %8.2f%% %11.2f",batchSize,nanos / 1000000,(double) referenceNanos / nanos,
+                                             100.0 * changed / expected.length,error / expected.length));
+        }
+
+        scanPool.shutdown();
+    }
+
+    private static Rendering render(String name, int batchSize, ForkJoinPool scanPool)
+    {
+        ImageGenerator generator = Main.generator(name);
+        generator.setScanPool(scanPool);
+        generator.setBatchSize(batchSize);
+
+        return generator.render();
+    }
+}
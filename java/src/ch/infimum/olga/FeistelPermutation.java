@@ -0,0 +1,82 @@
+package ch.infimum.olga;
+
+import java.util.Random;
+
+// A keyed permutation of 0 .. size()-1 computed on demand, in O(1) memory.
+//
+// A balanced Feistel network over the smallest even number of bits covering
+// size is a bijection of that power of two; values that land outside
+// 0 .. size()-1 are fed through it again (cycle walking) until they land
+// inside, which keeps it a bijection of 0 .. size()-1. The round keys come
+// from rng, so the order only depends on the rng, but it is not the order of
+// ShuffledPermutation.
+public class FeistelPermutation implements ColorPermutation
+{
+    private static final int ROUNDS = 4;
+
+    private int size;
+    private int halfBits;
+    private int halfMask;
+    private long[] keys = new long[ROUNDS];
+
+    public FeistelPermutation(int size, Random rng)
+    {
+        this.size = size;
+
+        int bits = 2;
+        while((1L << bits) < size)
+        {
+            bits += 2;
+        }
+        this.halfBits = bits / 2;
+        this.halfMask = (1 << halfBits) - 1;
+
+        for(int i = 0; i < ROUNDS; i++)
+        {
+            keys[i] = rng.nextLong();
+        }
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public int get(int position)
+    {
+        int value = position;
+        do
+        {
+            value = encrypt(value);
+        }
+        while(value >= size);
+
+        return value;
+    }
+
+    private int encrypt(int value)
+    {
+        int left = value >>> halfBits;
+        int right = value & halfMask;
+        for(int i = 0; i < ROUNDS; i++)
+        {
+            int next = left ^ round(right,keys[i]);
+            left = right;
+            right = next;
+        }
+
+        return (left << halfBits) | right;
+    }
+
+    // any well mixed function of value and key will do, it does not need to
+    // be invertible
+    private int round(int value, long key)
+    {
+        long h = (value + key) * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 29;
+        h *= 0xBF58476D1CE4E5B9L;
+        h ^= h >>> 32;
+
+        return (int) h & halfMask;
+    }
+}
@@ -0,0 +1,41 @@
+package ch.infimum.olga;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+// Writes the image to file as a PNG.
+public class FileSink implements ImageSink
+{
+    private File file;
+    private PngWriter png;
+
+    public FileSink(File file)
+    {
+        this(file,null);
+    }
+
+    // encoded by png instead of ImageIO if png is not null
+    public FileSink(File file, PngWriter png)
+    {
+        this.file = file;
+        this.png = png;
+    }
+
+    public void write(Rendering rendering) throws IOException
+    {
+        // opened here rather than by ImageIO, which reports a file it can not
+        // open without saying why
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        try
+        {
+            new StreamSink(out,png).write(rendering);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+}
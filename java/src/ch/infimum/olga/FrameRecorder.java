@@ -0,0 +1,411 @@
+package ch.infimum.olga;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOInvalidTreeException;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+
+// Records how an image grows, as a PNG sequence or an animated GIF, switched on
+// with ImageGenerator.setFrames(). Every frame shows interval placements more
+// than the one before, the last one the finished image.
+//
+// The generating thread never copies or encodes an image. It appends every
+// placement to a list of changes and, when a frame is due, hands the list to
+// an encoder thread, which applies it to its own copy of the canvas and
+// encodes that. Lists are recycled through a pool of queueCapacity of them
+// plus the one being filled, so generation only waits when queueCapacity
+// frames are still waiting to be applied, which is what keeps a slow disk
+// from piling up frames in memory.
+//
+// The copy comes from the generator's allocator, so with a mapped or sparse
+// canvas it is mapped or sparse too, and PNG frames are streamed from it a
+// row at a time by PngWriter. ImageIO quantizes every GIF frame into an
+// image on the heap, so GIFs are only recorded with the heap allocator.
+public class FrameRecorder
+{
+    private static final int DEFAULT_QUEUE_CAPACITY = 2;
+
+    private File target;
+    private boolean gif;
+    private int interval;
+    private int delayMillis;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+
+    private BlockingQueue<Changes> pending;
+    private BlockingQueue<Changes> free;
+    private Changes current;
+    private int frame;
+
+    private Thread encoder;
+    private volatile IOException failure;
+
+    private FrameRecorder(File target, boolean gif, int interval, int delayMillis)
+    {
+        if(interval < 1)
+        {
+            throw new IllegalArgumentException("frame interval " + interval);
+        }
+
+        this.target = target;
+        this.gif = gif;
+        this.interval = interval;
+        this.delayMillis = delayMillis;
+    }
+
+    // frame-00000.png, frame-00001.png, ... in directory
+    public static FrameRecorder pngSequence(File directory, int interval)
+    {
+        return new FrameRecorder(directory,false,interval,0);
+    }
+
+    // one looping GIF showing every frame for delayMillis, rounded to the
+    // hundredths of a second GIF counts in
+    public static FrameRecorder gif(File file, int interval, int delayMillis)
+    {
+        return new FrameRecorder(file,true,interval,delayMillis);
+    }
+
+    // How many frames may wait for the encoder before generation waits for
+    // it, 2 by default.
+    public void setQueueCapacity(int queueCapacity)
+    {
+        this.queueCapacity = queueCapacity;
+    }
+
+    // Number of frames handed to the encoder so far.
+    public int frames()
+    {
+        return frame;
+    }
+
+    // Starts the encoder from canvas as it is, with placed colors already on
+    // it, which a resumed generation has.
+    void started(Canvas canvas, int bitsPerChannel, int placed, CanvasAllocator allocator)
+    {
+        if(gif && !(allocator instanceof HeapCanvasAllocator))
+        {
+            throw new IllegalStateException("GIF frames need the whole image on the heap, record a PNG sequence instead");
+        }
+
+        NBitColors palette = new NBitColors(bitsPerChannel);
+
+        // only placed colors are copied, which keeps a sparse copy sparse
+        Canvas copy = allocator.allocate(canvas.width(),canvas.height(),palette.size() - 1);
+        int pixels = canvas.width() * canvas.height();
+        for(int i = 0; i < pixels; i++)
+        {
+            int color = canvas.get(i);
+            if(color != 0)
+            {
+                copy.set(i,color);
+            }
+        }
+
+        pending = new ArrayBlockingQueue<Changes>(queueCapacity + 1);
+        free = new ArrayBlockingQueue<Changes>(queueCapacity + 1);
+        for(int i = 0; i < queueCapacity; i++)
+        {
+            free.add(new Changes(interval));
+        }
+        current = new Changes(interval);
+        frame = placed / interval;
+
+        encoder = new Thread(new Encoder(copy,palette,frame),"olga frames " + target.getName());
+        encoder.setDaemon(true);
+        encoder.start();
+    }
+
+    void placed(int pixel, int color)
+    {
+        current.add(pixel,color);
+        if(current.count == interval)
+        {
+            handOver(false);
+        }
+    }
+
+    // Hands over the last frame and waits for the encoder to finish it.
+    void finished()
+    {
+        handOver(true);
+
+        try
+        {
+            encoder.join();
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while writing frames to " + target,e);
+        }
+
+        if(failure != null)
+        {
+            throw new UncheckedIOException(failure);
+        }
+    }
+
+    // Stops an encoder that is still running, dropping the frames it has not
+    // written, and closes what it has open. For generations that failed;
+    // after finished() there is nothing left to close.
+    void close()
+    {
+        if(encoder == null || !encoder.isAlive())
+        {
+            return;
+        }
+
+        encoder.interrupt();
+        try
+        {
+            encoder.join();
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void handOver(boolean last)
+    {
+        if(failure != null)
+        {
+            throw new UncheckedIOException(failure);
+        }
+
+        current.last = last;
+        try
+        {
+            pending.put(current);
+            if(current.count > 0)
+            {
+                frame++;
+            }
+            if(!last)
+            {
+                current = free.take();
+                current.count = 0;
+            }
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while writing frames to " + target,e);
+        }
+    }
+
+    // The placements between two frames.
+    private static class Changes
+    {
+        int[] pixels;
+        int[] colors;
+        int count;
+        boolean last;
+
+        Changes(int capacity)
+        {
+            pixels = new int[capacity];
+            colors = new int[capacity];
+        }
+
+        void add(int pixel, int color)
+        {
+            pixels[count] = pixel;
+            colors[count] = color;
+            count++;
+        }
+    }
+
+    private class Encoder implements Runnable
+    {
+        private Canvas canvas;
+        private NBitColors palette;
+        private CanvasImage image;
+        private int number;
+
+        private PngWriter png;
+        private ImageWriter writer;
+        private ImageOutputStream out;
+        private IIOMetadata metadata;
+
+        Encoder(Canvas canvas, NBitColors palette, int number)
+        {
+            this.canvas = canvas;
+            this.palette = palette;
+            this.image = new CanvasImage(canvas,palette);
+            this.number = number;
+        }
+
+        public void run()
+        {
+            try
+            {
+                boolean last = false;
+                while(!last)
+                {
+                    Changes changes = pending.take();
+                    int count = changes.count;
+                    for(int i = 0; i < count; i++)
+                    {
+                        canvas.set(changes.pixels[i],changes.colors[i]);
+                    }
+                    last = changes.last;
+
+                    // the changes are in the image now, generation can have
+                    // the list back before the frame is encoded
+                    free.add(changes);
+
+                    if(count > 0 && failure == null)
+                    {
+                        try
+                        {
+                            write();
+                        }
+                        catch(IOException e)
+                        {
+                            failure = e;
+                        }
+                        catch(RuntimeException e)
+                        {
+                            failure = new IOException("can not write frame " + number,e);
+                        }
+                    }
+                }
+            }
+            catch(InterruptedException e)
+            {
+                failure = new IOException("frame encoder interrupted",e);
+            }
+            finally
+            {
+                try
+                {
+                    close();
+                }
+                catch(IOException e)
+                {
+                    if(failure == null)
+                    {
+                        failure = e;
+                    }
+                }
+            }
+        }
+
+        private void write() throws IOException
+        {
+            if(!gif)
+            {
+                // there are many frames and only the image is kept, so
+                // frames are deflated for speed
+                if(png == null)
+                {
+                    png = new PngWriter(Deflater.BEST_SPEED,null);
+                }
+
+                target.mkdirs();
+                OutputStream stream = new BufferedOutputStream(new FileOutputStream(new File(target,String.format("frame-%05d.png",number++))));
+                try
+                {
+                    png.write(canvas,palette,stream);
+                }
+                finally
+                {
+                    stream.close();
+                }
+                return;
+            }
+
+            if(out == null)
+            {
+                writer = ImageIO.getImageWritersByFormatName("gif").next();
+                ImageOutputStream stream = ImageIO.createImageOutputStream(target);
+                try
+                {
+                    writer.setOutput(stream);
+                    writer.prepareWriteSequence(null);
+                    metadata = gifMetadata();
+                }
+                catch(IOException | RuntimeException e)
+                {
+                    writer.dispose();
+                    stream.close();
+                    throw e;
+                }
+                out = stream;
+            }
+
+            writer.writeToSequence(new IIOImage(image,null,metadata),null);
+            number++;
+        }
+
+        // the stream is closed even if the GIF can not be ended properly
+        private void close() throws IOException
+        {
+            if(out != null)
+            {
+                try
+                {
+                    writer.endWriteSequence();
+                }
+                finally
+                {
+                    writer.dispose();
+                    out.close();
+                }
+            }
+        }
+
+        // a delay after every frame, and looping forever
+        private IIOMetadata gifMetadata() throws IIOInvalidTreeException
+        {
+            IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(image),null);
+            String format = metadata.getNativeMetadataFormatName();
+            IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(format);
+
+            IIOMetadataNode control = child(root,"GraphicControlExtension");
+            control.setAttribute("disposalMethod","none");
+            control.setAttribute("userInputFlag","FALSE");
+            control.setAttribute("transparentColorFlag","FALSE");
+            control.setAttribute("delayTime",Integer.toString(Math.max(delayMillis / 10,1)));
+            control.setAttribute("transparentColorIndex","0");
+
+            IIOMetadataNode application = new IIOMetadataNode("ApplicationExtension");
+            application.setAttribute("applicationID","NETSCAPE");
+            application.setAttribute("authenticationCode","2.0");
+            application.setUserObject(new byte[]{1,0,0});
+            child(root,"ApplicationExtensions").appendChild(application);
+
+            metadata.setFromTree(format,root);
+            return metadata;
+        }
+
+        private IIOMetadataNode child(IIOMetadataNode parent, String name)
+        {
+            for(int i = 0; i < parent.getLength(); i++)
+            {
+                if(parent.item(i).getNodeName().equals(name))
+                {
+                    return (IIOMetadataNode) parent.item(i);
+                }
+            }
+
+            IIOMetadataNode node = new IIOMetadataNode(name);
+            parent.appendChild(node);
+            return node;
+        }
+    }
+}
@@ -0,0 +1,291 @@
+
+package ch.infimum.olga;
+
+import java.util.Arrays;
+
+// The open pixels together with the colors of their filled neighbours.
+//
+// Pixels are y*width+x indices kept in a dense array, with a per pixel
+// position index so that add, remove and contains are O(1) and iterating is a
+// plain array walk. Removing swaps the last entry into the freed position.
+// The position index is a canvas holding position + 1, 0 meaning not open.
+//
+// Each open pixel owns stride() ints in slots(), holding the number of filled
+// neighbours followed by their palette indices. They are filled once when the
+// pixel is opened and are then only patched when a color gets placed next to
+// it. Black, index 0, counts as an empty pixel, as it does everywhere else.
+// Neighbours are those of the given Neighbourhood, by default the 8
+// surrounding pixels, for which stride() is SLOTS.
+//
+// With a BoxBoundedEvaluator set, each open pixel also keeps the box around
+// its neighbours' coordinates, and every BLOCK consecutive open pixels keep
+// the union of their boxes.
+public class Frontier
+{
+    public static final int SLOTS = 9;
+    public static final int BOX = 6;
+    public static final int BLOCK = 64;
+
+    private Neighbourhood neighbourhood;
+    private int[] neighbours;
+    private int stride;
+
+    private int size;
+    private int[] pixels = new int[64];
+    private int[] slots;
+    private Canvas position;
+
+    private BoxBoundedEvaluator bounds;
+    private int[] boxes;
+    private int[] blockBoxes;
+
+    public Frontier(int width, int height)
+    {
+        this(width,height,new HeapCanvasAllocator());
+    }
+
+    public Frontier(int width, int height, CanvasAllocator allocator)
+    {
+        this(Neighbourhood.moore(width,height,1),allocator);
+    }
+
+    public Frontier(Neighbourhood neighbourhood, CanvasAllocator allocator)
+    {
+        this.neighbourhood = neighbourhood;
+        this.neighbours = new int[neighbourhood.size()];
+        this.stride = neighbourhood.size() + 1;
+        this.slots = new int[pixels.length * stride];
+
+        position = allocator.allocate(neighbourhood.width(),neighbourhood.height(),-1);
+    }
+
+    // Has to be set while the frontier is empty.
+    public void setBounds(BoxBoundedEvaluator bounds)
+    {
+        this.bounds = bounds;
+        this.boxes = new int[pixels.length * BOX];
+        this.blockBoxes = new int[(pixels.length / BLOCK + 1) * BOX];
+    }
+
+    public boolean bounded()
+    {
+        return bounds != null;
+    }
+
+    // Lower bound of the evaluator for colorIndex on the i-th open pixel.
+    public int lowerBound(int colorIndex, int i)
+    {
+        return bounds.lowerBound(colorIndex,boxes,i * BOX);
+    }
+
+    // Lower bound of the evaluator for colorIndex on every open pixel from
+    // block*BLOCK to (block+1)*BLOCK.
+    public int blockLowerBound(int colorIndex, int block)
+    {
+        return bounds.lowerBound(colorIndex,blockBoxes,block * BOX);
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public int pixel(int i)
+    {
+        return pixels[i];
+    }
+
+    // number of slots per open pixel
+    public int stride()
+    {
+        return stride;
+    }
+
+    // slots of the i-th pixel start at i*stride()
+    public int[] slots()
+    {
+        return slots;
+    }
+
+    // where pixel is in the open set, -1 if it is not open
+    public int position(int pixel)
+    {
+        return position.get(pixel) - 1;
+    }
+
+    public boolean contains(int pixel)
+    {
+        return position.get(pixel) != 0;
+    }
+
+    public void add(int pixel, Canvas canvas)
+    {
+        if(size == pixels.length)
+        {
+            pixels = Arrays.copyOf(pixels,2 * size);
+            slots = Arrays.copyOf(slots,2 * size * stride);
+            if(bounds != null)
+            {
+                boxes = Arrays.copyOf(boxes,2 * size * BOX);
+                blockBoxes = Arrays.copyOf(blockBoxes,(2 * size / BLOCK + 1) * BOX);
+            }
+        }
+
+        int base = size * stride;
+        int count = 0;
+
+        int n = neighbourhood.neighbours(pixel,neighbours);
+        for(int i = 0; i < n; i++)
+        {
+            int nColor = canvas.get(neighbours[i]);
+            if(nColor != 0)
+            {
+                count++;
+                slots[base + count] = nColor;
+            }
+        }
+        slots[base] = count;
+
+        pixels[size] = pixel;
+        size++;
+        position.set(pixel,size);
+
+        if(bounds != null)
+        {
+            box(size - 1);
+            if((size - 1) % BLOCK == 0)
+            {
+                System.arraycopy(boxes,(size - 1) * BOX,blockBoxes,(size - 1) / BLOCK * BOX,BOX);
+            }
+            else
+            {
+                union((size - 1) / BLOCK,size - 1);
+            }
+        }
+    }
+
+    public void remove(int pixel)
+    {
+        int i = position.get(pixel) - 1;
+        if(i < 0)
+        {
+            return;
+        }
+
+        size--;
+        if(i != size)
+        {
+            int last = pixels[size];
+            pixels[i] = last;
+            position.set(last,i + 1);
+            System.arraycopy(slots,size * stride,slots,i * stride,stride);
+            if(bounds != null)
+            {
+                System.arraycopy(boxes,size * BOX,boxes,i * BOX,BOX);
+                block(i / BLOCK);
+            }
+        }
+        position.set(pixel,0);
+
+        if(bounds != null && size % BLOCK != 0)
+        {
+            block(size / BLOCK);
+        }
+    }
+
+    // Colors are unique on the canvas, so the slot of a neighbour that got
+    // repainted is the one holding its previous color.
+    public void placed(int pixel, int previous, int color)
+    {
+        int count = neighbourhood.neighbours(pixel,neighbours);
+        for(int i = 0; i < count; i++)
+        {
+            int n = position.get(neighbours[i]) - 1;
+            if(n >= 0)
+            {
+                replace(n * stride,previous,color);
+                if(bounds != null)
+                {
+                    box(n);
+                    block(n / BLOCK);
+                }
+            }
+        }
+    }
+
+    private void replace(int base, int previous, int color)
+    {
+        int count = slots[base];
+        if(previous != 0)
+        {
+            for(int i = base + 1; i <= base + count; i++)
+            {
+                if(slots[i] == previous)
+                {
+                    if(color != 0)
+                    {
+                        slots[i] = color;
+                    }
+                    else
+                    {
+                        slots[i] = slots[base + count];
+                        slots[base + count] = 0;
+                        slots[base]--;
+                    }
+                    return;
+                }
+            }
+        }
+
+        if(color != 0)
+        {
+            slots[base]++;
+            slots[base + slots[base]] = color;
+        }
+    }
+
+    private void box(int i)
+    {
+        int base = i * stride;
+        int box = i * BOX;
+        for(int axis = 0; axis < 3; axis++)
+        {
+            int min = BoxBoundedEvaluator.EMPTY_MIN;
+            int max = BoxBoundedEvaluator.EMPTY_MAX;
+            for(int n = base + 1; n <= base + slots[base]; n++)
+            {
+                int c = bounds.coordinate(slots[n],axis);
+                min = Math.min(min,c);
+                max = Math.max(max,c);
+            }
+            boxes[box + 2 * axis] = min;
+            boxes[box + 2 * axis + 1] = max;
+        }
+    }
+
+    private void block(int block)
+    {
+        int box = block * BOX;
+        for(int axis = 0; axis < 6; axis += 2)
+        {
+            blockBoxes[box + axis] = BoxBoundedEvaluator.EMPTY_MIN;
+            blockBoxes[box + axis + 1] = BoxBoundedEvaluator.EMPTY_MAX;
+        }
+
+        for(int i = block * BLOCK; i < Math.min((block + 1) * BLOCK,size); i++)
+        {
+            union(block,i);
+        }
+    }
+
+    private void union(int block, int i)
+    {
+        int box = block * BOX;
+        int other = i * BOX;
+        for(int axis = 0; axis < 6; axis += 2)
+        {
+            blockBoxes[box + axis] = Math.min(blockBoxes[box + axis],boxes[other + axis]);
+            blockBoxes[box + axis + 1] = Math.max(blockBoxes[box + axis + 1],boxes[other + axis + 1]);
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package ch.infimum.olga;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+// Instrumentation of one ImageGenerator.generate() or render() call,
+// switched on with ImageGenerator.setMetrics(). Without it the generator only
+// pays a null check per placement.
+//
+// The generating thread adds to plain counters and publishes them every
+// SAMPLE placements, which is when the JMX attributes change, a JFR
+// ch.infimum.olga.Progress event is committed (if a recording asks for it) and
+// the progress line is printed (if one is due). Search time covers the color
+// index or the frontier scan, update time the bookkeeping after a placement.
+// Allocation is measured on the generating thread only, so a scan pool's
+// workers are not part of it.
+//
+// A ch.infimum.olga.Generation event sums up the placements once the last
+// color is placed. Only generate() encodes the image, so only it commits a
+// ch.infimum.olga.Encode event and sets the encode time.
+public class GenerationMetrics implements GenerationMetricsMBean
+{
+    private static final int SAMPLE = 1024;
+
+    private String name;
+    private ObjectName objectName;
+
+    private PrintStream progress;
+    private long progressInterval;
+    private long lastProgress;
+
+    private GenerationEvent generation;
+    private long start;
+    private long startAllocated;
+    private long lastSample;
+    private int lastPlacements;
+    private long lastEvaluations;
+
+    private int placements;
+    private int frontierSize;
+    private long evaluations;
+    private long searchNanos;
+    private long updateNanos;
+
+    private volatile int colors;
+    private volatile int publishedPlacements;
+    private volatile double placementsPerSecond;
+    private volatile int publishedFrontierSize;
+    private volatile double evaluationsPerPlacement;
+    private volatile long publishedSearchNanos;
+    private volatile long publishedUpdateNanos;
+    private volatile long encodeNanos;
+    private volatile double allocatedBytesPerSecond;
+
+    public GenerationMetrics(String name)
+    {
+        this.name = name;
+    }
+
+    // Prints a progress line to out at most every intervalMillis.
+    public void setProgress(PrintStream out, long intervalMillis)
+    {
+        this.progress = out;
+        this.progressInterval = intervalMillis * 1000000L;
+    }
+
+    public void register()
+    {
+        try
+        {
+            objectName = new ObjectName("ch.infimum.olga:type=Generation,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this,objectName);
+        }
+        catch(JMException e)
+        {
+            throw new IllegalStateException("can not register metrics for " + name,e);
+        }
+    }
+
+    public void unregister()
+    {
+        try
+        {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        }
+        catch(JMException e)
+        {
+            throw new IllegalStateException("can not unregister metrics for " + name,e);
+        }
+    }
+
+    void started(int colors)
+    {
+        this.colors = colors;
+        generation = new GenerationEvent();
+        generation.begin();
+        start = System.nanoTime();
+        startAllocated = allocatedBytes();
+        lastSample = start;
+        lastProgress = start;
+    }
+
+    void placed(int frontierSize, long evaluations, long searchNanos, long updateNanos)
+    {
+        this.placements++;
+        this.frontierSize = frontierSize;
+        this.evaluations += evaluations;
+        this.searchNanos += searchNanos;
+        this.updateNanos += updateNanos;
+
+        if(placements % SAMPLE == 0 || placements == colors)
+        {
+            sample();
+        }
+    }
+
+    // the last color is placed, whether or not an image is encoded after it
+    void finished()
+    {
+        if(placements != lastPlacements)
+        {
+            sample();
+        }
+
+        generation.end();
+        if(generation.shouldCommit())
+        {
+            generation.name = name;
+            generation.colors = colors;
+            generation.searchTime = searchNanos;
+            generation.updateTime = updateNanos;
+            generation.evaluations = evaluations;
+            generation.allocated = allocatedBytes() - startAllocated;
+            generation.commit();
+        }
+    }
+
+    // generate() wrote the image to its sink, which took nanos
+    void encoded(long nanos)
+    {
+        encodeNanos = nanos;
+
+        EncodeEvent event = new EncodeEvent();
+        if(event.shouldCommit())
+        {
+            event.name = name;
+            event.encodeTime = nanos;
+            event.commit();
+        }
+    }
+
+    private void sample()
+    {
+        long now = System.nanoTime();
+        long elapsed = Math.max(now - lastSample,1);
+        int placed = placements - lastPlacements;
+        long evaluated = evaluations - lastEvaluations;
+
+        publishedPlacements = placements;
+        placementsPerSecond = placed * 1e9 / elapsed;
+        publishedFrontierSize = frontierSize;
+        evaluationsPerPlacement = placed == 0 ? 0 : (double) evaluated / placed;
+        publishedSearchNanos = searchNanos;
+        publishedUpdateNanos = updateNanos;
+        allocatedBytesPerSecond = (allocatedBytes() - startAllocated) * 1e9 / Math.max(now - start,1);
+
+        ProgressEvent event = new ProgressEvent();
+        if(event.shouldCommit())
+        {
+            event.name = name;
+            event.placements = placements;
+            event.placed = placed;
+            event.frontierSize = frontierSize;
+            event.evaluations = evaluated;
+            event.commit();
+        }
+
+        if(progress != null && (now - lastProgress >= progressInterval || placements == colors))
+        {
+            progress.println(String.format("%s: %d/%d placements, %.0f/s, frontier %d, %.1f evaluations/placement",
+                                           name,placements,colors,placementsPerSecond,frontierSize,evaluationsPerPlacement));
+            lastProgress = now;
+        }
+
+        lastSample = now;
+        lastPlacements = placements;
+        lastEvaluations = evaluations;
+    }
+
+    private static long allocatedBytes()
+    {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if(threads instanceof com.sun.management.ThreadMXBean)
+        {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        return 0;
+    }
+
+    public int getColors()
+    {
+        return colors;
+    }
+
+    public int getPlacements()
+    {
+        return publishedPlacements;
+    }
+
+    public double getPlacementsPerSecond()
+    {
+        return placementsPerSecond;
+    }
+
+    public int getFrontierSize()
+    {
+        return publishedFrontierSize;
+    }
+
+    public double getEvaluationsPerPlacement()
+    {
+        return evaluationsPerPlacement;
+    }
+
+    public long getSearchMillis()
+    {
+        return publishedSearchNanos / 1000000;
+    }
+
+    public long getUpdateMillis()
+    {
+        return publishedUpdateNanos / 1000000;
+    }
+
+    public long getEncodeMillis()
+    {
+        return encodeNanos / 1000000;
+    }
+
+    public double getAllocatedBytesPerSecond()
+    {
+        return allocatedBytesPerSecond;
+    }
+}
+
+@Name("ch.infimum.olga.Progress")
+@Label("Generation Progress")
+@Category("olga")
+class ProgressEvent extends Event
+{
+    @Label("Name")
+    String name;
+
+    @Label("Placements")
+    int placements;
+
+    @Label("Placed Since Last Event")
+    int placed;
+
+    @Label("Frontier Size")
+    int frontierSize;
+
+    @Label("Evaluations Since Last Event")
+    long evaluations;
+}
+
+@Name("ch.infimum.olga.Generation")
+@Label("Generation")
+@Category("olga")
+class GenerationEvent extends Event
+{
+    @Label("Name")
+    String name;
+
+    @Label("Colors")
+    int colors;
+
+    @Label("Search Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long searchTime;
+
+    @Label("Update Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long updateTime;
+
+    @Label("Evaluations")
+    long evaluations;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocated;
+}
+
+@Name("ch.infimum.olga.Encode")
+@Label("Encode")
+@Category("olga")
+class EncodeEvent extends Event
+{
+    @Label("Name")
+    String name;
+
+    @Label("Encode Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long encodeTime;
+}
@@ -0,0 +1,23 @@
+package ch.infimum.olga;
+
+// JMX view of a running generation, see GenerationMetrics.
+public interface GenerationMetricsMBean
+{
+    int getColors();
+
+    int getPlacements();
+
+    double getPlacementsPerSecond();
+
+    int getFrontierSize();
+
+    double getEvaluationsPerPlacement();
+
+    long getSearchMillis();
+
+    long getUpdateMillis();
+
+    long getEncodeMillis();
+
+    double getAllocatedBytesPerSecond();
+}
@@ -0,0 +1,15 @@
+
+package ch.infimum.olga;
+
+public class HeapCanvasAllocator implements CanvasAllocator
+{
+    public Canvas allocate(int width, int height, int maxValue)
+    {
+        if(maxValue >= 0 && maxValue <= 0xFFFF)
+        {
+            return new ShortCanvas(width,height);
+        }
+
+        return new IntCanvas(width,height);
+    }
+}
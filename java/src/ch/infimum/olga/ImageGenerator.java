@@ -1,20 +1,26 @@
 
 package ch.infimum.olga;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
 import java.io.File;
-import java.util.Random;
-import java.util.List;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
 
 public class ImageGenerator
 {
+    private static final int NO_PIXEL = ColorIndex.NO_KEY;
+
+    private static final int SEAM_PASSES = 8;
+
     private int bitsPerChannel;
-    private String fileName;
-    private Evaluator evaluator;
+    private ImageSink sink;
+    private SliceEvaluator evaluator;
     private Random rng;
 
     private int width;
@@ -22,11 +28,42 @@ public class ImageGenerator
 
     private boolean strictFrame;
 
+    private ForkJoinPool scanPool;
+    private CanvasAllocator allocator = new HeapCanvasAllocator();
+    private Checkpoint checkpoint;
+    private GenerationMetrics metrics;
+    private FrameRecorder frames;
+    private int batchSize = 1;
+    private int tileColumns = 1;
+    private int tileRows = 1;
+    private boolean lazyPermutation;
+    private boolean crop;
+    private int samples;
+    private int beam;
+
+    // evaluator calls of the exact frontier scans so far
+    private LongAdder scanned = new LongAdder();
+
+    private Neighbourhood neighbourhood;
+    private int[] neighbours;
+    private int[] keyNeighbours;
+
+    // the box around the pixels grow() placed, empty while maxX < minX
+    private int minX;
+    private int minY;
+    private int maxX;
+    private int maxY;
+
 
     public ImageGenerator(int bitsPerChannel, String fileName, Random rng, Evaluator evaluator, boolean strictFrame)
+    {
+        this(bitsPerChannel,fileName,rng,new ListEvaluatorAdapter(evaluator),strictFrame);
+    }
+
+    public ImageGenerator(int bitsPerChannel, String fileName, Random rng, SliceEvaluator evaluator, boolean strictFrame)
     {
         this.bitsPerChannel = bitsPerChannel;
-        this.fileName = fileName;
+        this.sink = new FileSink(new File(fileName));
         this.evaluator = evaluator;
         this.rng = rng;
 
@@ -49,82 +86,887 @@ public class ImageGenerator
         }
 
         this.strictFrame = strictFrame;
+
+        setNeighbourhood(Neighbourhood.moore(width,height,1));
+    }
+
+    // A tile of generator, growing on its own part of the canvas.
+    private ImageGenerator(ImageGenerator generator, int width, int height)
+    {
+        this.bitsPerChannel = generator.bitsPerChannel;
+        this.evaluator = generator.evaluator;
+        this.width = width;
+        this.height = height;
+        this.strictFrame = generator.strictFrame;
+        this.allocator = generator.allocator;
+        this.batchSize = generator.batchSize;
+        this.samples = generator.samples;
+        this.beam = generator.beam;
+
+        setNeighbourhood(generator.neighbourhood);
+    }
+
+    // Scans the frontier on pool when it is large enough to be worth it. The
+    // image does not depend on the pool, but the evaluator has to be thread
+    // safe. null scans on the calling thread.
+    public void setScanPool(ForkJoinPool pool)
+    {
+        this.scanPool = pool;
+    }
+
+    // Generation works on palette indices: the permutation, the canvas, the
+    // frontier and the evaluator all see NBitColors.index() values, and black
+    // being index 0 an empty pixel still reads as 0. RGB is only produced
+    // when the image is written.
+    // Large canvas mode: with a MappedCanvasAllocator the canvas, the closed
+    // bitmap, the color permutation, the frontier position index and the
+    // color index live in memory mapped files instead of on the heap.
+    // With a SparseCanvasAllocator the per pixel structures only take memory
+    // for the parts of the canvas the image has reached.
+    public void setCanvasAllocator(CanvasAllocator allocator)
+    {
+        this.allocator = allocator;
     }
 
-    public void generate()
+    // Journals the placements to file and flushes every interval placements.
+    // If file already holds the journal of an interrupted run of the same
+    // generation, generate() replays it and carries on from there, giving the
+    // same image as an uninterrupted run. The file is deleted once the image
+    // has been written.
+    public void setCheckpoint(File file, int interval)
     {
-        NBitColors colorStream = new NBitColors(bitsPerChannel);
+        this.checkpoint = new Checkpoint(file,interval);
+    }
+
+    // Which pixels count as next to each other, for opening pixels, for the
+    // colors an open pixel is evaluated against and for everything derived
+    // from that. Only the shape of neighbourhood is used, it is fitted to the
+    // canvas (or tile) size. Moore radius 1, the 8 surrounding pixels, is the
+    // default.
+    public void setNeighbourhood(Neighbourhood neighbourhood)
+    {
+        this.neighbourhood = neighbourhood.resize(width,height);
+        this.neighbours = new int[neighbourhood.size()];
+        this.keyNeighbours = new int[neighbourhood.size()];
+    }
+
+    // Places up to batchSize colors per frontier scan, see placeBatched(). The
+    // image drifts away from the one placed color by color as batchSize grows,
+    // DriftReport measures by how much. Evaluators searched with a ColorIndex
+    // do not scan the frontier and ignore it, and so does a generation with a
+    // checkpoint, whose journal relies on colors going out in permutation
+    // order.
+    public void setBatchSize(int batchSize)
+    {
+        this.batchSize = batchSize;
+    }
+
+    // Approximate placement for previews: every color is only evaluated on
+    // samples open pixels and the beam best pixels found for the color before,
+    // see SampledScan, instead of on the whole frontier. The time per color
+    // then no longer grows with the frontier; SampleReport measures what that
+    // costs in quality. 0 samples, the default, scans the whole frontier.
+    // Like the batch size, ignored by evaluators searched with a ColorIndex
+    // and by generations with a checkpoint, which could not be resumed to the
+    // same image. Takes precedence over the batch size.
+    public void setSampling(int samples, int beam)
+    {
+        if(samples < 0 || beam < 0)
+        {
+            throw new IllegalArgumentException(samples + " samples and a beam of " + beam);
+        }
+
+        this.samples = samples;
+        this.beam = beam;
+    }
 
-        ArrayList<Integer> colorPermutation = new ArrayList<Integer>(width * height);
+    // Places the colors in the order of a FeistelPermutation, computed when
+    // needed, instead of shuffling an array of all of them first. Startup and
+    // memory then no longer grow with the palette, but the image is not the
+    // one the shuffled order gives.
+    public void setLazyPermutation(boolean lazyPermutation)
+    {
+        this.lazyPermutation = lazyPermutation;
+    }
 
-        for(int color : colorStream)
+    // Splits the canvas into columns x rows tiles that grow at the same time,
+    // each from its own seed and with every (columns*rows)-th color of the
+    // permutation, on the scan pool or the common pool. Seams between tiles
+    // are then smoothed by swapping colors across them, see reconcileSeams().
+    // The image only depends on the rng and the tile layout. Checkpoints and
+    // metrics cover whole images and are not used by tiled generations.
+    public void setTiles(int columns, int rows)
+    {
+        if(columns < 1 || rows < 1 || width % columns != 0 || height % rows != 0)
         {
-            colorPermutation.add(color);
+            throw new IllegalArgumentException(columns + " x " + rows + " tiles do not divide a " + width + " x " + height + " canvas");
         }
 
-        Collections.shuffle(colorPermutation, rng);
+        this.tileColumns = columns;
+        this.tileRows = rows;
+    }
+
+    public void setMetrics(GenerationMetrics metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    // Crops the image to the smallest rectangle holding every placed color
+    // instead of keeping the whole frame, which for a non strict frame is
+    // mostly empty. The rectangle follows the placements, not the canvas,
+    // so placed black pixels are kept.
+    public void setCrop(boolean crop)
+    {
+        this.crop = crop;
+    }
 
-        BufferedImage img = new BufferedImage(width,height,BufferedImage.TYPE_INT_RGB);
+    // Records the growth as a PNG sequence or an animated GIF, see
+    // FrameRecorder. Like checkpoints, not used by tiled generations. GIFs
+    // need the heap allocator.
+    public void setFrames(FrameRecorder frames)
+    {
+        this.frames = frames;
+    }
 
-        HashSet<Pixel> openSet = new HashSet<Pixel>();
-        HashSet<Pixel> closedSet = new HashSet<Pixel>();
+    // Where generate() writes the image, the PNG file given to the
+    // constructor by default.
+    public void setSink(ImageSink sink)
+    {
+        this.sink = sink;
+    }
 
-        for(int color : colorPermutation)
+    // Renders the image and writes it to the sink. Failures of the sink are
+    // the caller's; a checkpoint is only deleted once the sink has the image.
+    public void generate() throws IOException
+    {
+        try
         {
+            Rendering rendering = renderImage();
 
-            Pixel best = null;
-            if(strictFrame)
+            long encoding = System.nanoTime();
+            sink.write(rendering);
+
+            if(metrics != null && !tiled())
             {
-                best = new Pixel(rng.nextInt(width),rng.nextInt(height));
+                metrics.encoded(System.nanoTime() - encoding);
             }
-            else
+
+            if(checkpoint != null && !tiled())
+            {
+                checkpoint.delete();
+            }
+        }
+        finally
+        {
+            // a failed run keeps its journal to resume from, closed
+            if(checkpoint != null)
+            {
+                checkpoint.close();
+            }
+        }
+    }
+
+    // Renders the image and leaves it in memory, without touching the sink.
+    // A checkpoint is deleted once the image is complete.
+    public Rendering render()
+    {
+        try
+        {
+            Rendering rendering = renderImage();
+
+            if(checkpoint != null && !tiled())
             {
-                best = new Pixel(width/2,height/2);
+                checkpoint.delete();
             }
-            int bestValue = Integer.MAX_VALUE;
-            for(Pixel p : openSet)
+
+            return rendering;
+        }
+        finally
+        {
+            if(checkpoint != null)
             {
-                List<Integer> neighbourColors = new ArrayList<Integer>(8);
-                for(Pixel n : p.neighbours(width,height))
+                checkpoint.close();
+            }
+        }
+    }
+
+    private Rendering renderImage()
+    {
+        NBitColors palette = new NBitColors(bitsPerChannel);
+
+        boolean tiled = tiled();
+
+        Random rng = this.rng;
+        if(checkpoint != null && !tiled)
+        {
+            String order = lazyPermutation ? FeistelPermutation.class.getName() : ShuffledPermutation.class.getName();
+            rng = checkpoint.open(bitsPerChannel,width,height,strictFrame,evaluator.getClass().getName(),order,neighbourhood,batchSize,
+                                  samples,beam,rng);
+        }
+
+        int colors = palette.size();
+        ColorPermutation colorPermutation;
+        if(lazyPermutation)
+        {
+            colorPermutation = new FeistelPermutation(colors,rng);
+        }
+        else
+        {
+            colorPermutation = new ShuffledPermutation(colors,rng,allocator);
+        }
+
+        Canvas canvas = allocator.allocate(width,height,colors - 1);
+
+        IndexedEvaluator indexed;
+        if(evaluator instanceof IndexedEvaluator)
+        {
+            indexed = (IndexedEvaluator) evaluator;
+        }
+        else
+        {
+            indexed = new RgbEvaluatorAdapter(evaluator,palette);
+        }
+
+        if(tiled)
+        {
+            generateTiles(colorPermutation,canvas,indexed,rng);
+        }
+        else
+        {
+            try
+            {
+                grow(colorPermutation,canvas,indexed,rng);
+
+                if(frames != null)
                 {
-                    int nColor = img.getRGB(n.x(),n.y()) & 0x00FFFFFF;
-                    if(nColor != 0)
+                    frames.finished();
+                }
+            }
+            finally
+            {
+                // stops the encoder of a generation that failed
+                if(frames != null)
+                {
+                    frames.close();
+                }
+            }
+        }
+
+        if(crop && maxX >= minX)
+        {
+            canvas = new CanvasRegion(canvas,minX,minY,maxX - minX + 1,maxY - minY + 1);
+        }
+
+        return new Rendering(canvas,palette);
+    }
+
+    private boolean tiled()
+    {
+        return tileColumns * tileRows > 1;
+    }
+
+    // Places the colors of colorPermutation on canvas, one after the other.
+    private void grow(ColorPermutation colorPermutation, Canvas canvas, IndexedEvaluator indexed, Random rng)
+    {
+        int colors = colorPermutation.size();
+        clearPlaced();
+
+        Frontier openSet = new Frontier(neighbourhood,allocator);
+        PixelBitmap closedSet = new PixelBitmap(allocator,width,height);
+
+        ColorIndex colorIndex = null;
+        if(evaluator instanceof ChannelDistanceEvaluator)
+        {
+            colorIndex = new ColorOctree(bitsPerChannel,(ChannelDistanceEvaluator) evaluator,allocator);
+        }
+        else if(indexed instanceof PropertyDistanceEvaluator)
+        {
+            colorIndex = new PropertyIndex(1 << (3 * bitsPerChannel),(PropertyDistanceEvaluator) indexed,allocator);
+        }
+        else if(indexed instanceof BoxBoundedEvaluator)
+        {
+            openSet.setBounds((BoxBoundedEvaluator) indexed);
+        }
+
+        int start = 0;
+        if(checkpoint != null && checkpoint.recorded() > 0)
+        {
+            start = replay(colorPermutation,canvas,closedSet,rng);
+            rebuild(canvas,closedSet,openSet,colorIndex);
+        }
+
+        if(metrics != null)
+        {
+            metrics.started(colors - start);
+        }
+
+        if(frames != null)
+        {
+            frames.started(canvas,bitsPerChannel,start,allocator);
+        }
+
+        SampledScan sampled = null;
+        if(samples > 0 && colorIndex == null && checkpoint == null)
+        {
+            sampled = new SampledScan(samples,beam);
+        }
+
+        if(batchSize > 1 && colorIndex == null && checkpoint == null && sampled == null)
+        {
+            placeBatched(start,colorPermutation,canvas,indexed,openSet,closedSet,rng);
+        }
+        else
+        {
+            for(int c = start; c < colors; c++)
+            {
+                int color = colorPermutation.get(c);
+                int fallback = fallback(rng);
+
+                long begin = 0;
+                long evaluations = 0;
+                if(metrics != null)
+                {
+                    begin = System.nanoTime();
+                    if(colorIndex != null)
+                    {
+                        evaluations = colorIndex.evaluations();
+                    }
+                    else if(sampled != null)
+                    {
+                        evaluations = sampled.evaluations();
+                    }
+                    else
                     {
-                        neighbourColors.add(nColor);
+                        evaluations = scanned.sum();
                     }
                 }
 
-                int val = evaluator.evaluate(color,neighbourColors);
-                if(val < bestValue)
+                int best;
+                if(colorIndex != null)
+                {
+                    best = colorIndex.nearest(color);
+                }
+                else if(sampled != null)
+                {
+                    long packed = sampled.best(indexed,openSet,color);
+                    best = packed == ParallelScan.NONE ? NO_PIXEL : ParallelScan.pixel(packed);
+                }
+                else if(scanPool != null)
+                {
+                    long packed = ParallelScan.best(scanPool,indexed,openSet,color,scanned);
+                    best = packed == ParallelScan.NONE ? NO_PIXEL : ParallelScan.pixel(packed);
+                }
+                else
+                {
+                    best = scan(indexed,color,openSet);
+                }
+
+                if(best == NO_PIXEL)
                 {
-                    bestValue = val;
-                    best = p;
+                    best = fallback;
+                }
+
+                long searched = 0;
+                if(metrics != null)
+                {
+                    searched = System.nanoTime();
+                    if(colorIndex != null)
+                    {
+                        evaluations = colorIndex.evaluations() - evaluations;
+                    }
+                    else if(sampled != null)
+                    {
+                        evaluations = sampled.evaluations() - evaluations;
+                    }
+                    else
+                    {
+                        evaluations = scanned.sum() - evaluations;
+                    }
+                }
+
+                place(best,color,canvas,openSet,closedSet,colorIndex);
+
+                if(metrics != null)
+                {
+                    metrics.placed(openSet.size(),evaluations,searched - begin,System.nanoTime() - searched);
                 }
             }
+        }
 
-            img.setRGB(best.x(),best.y(),color);
+        if(metrics != null)
+        {
+            metrics.finished();
+        }
+    }
 
-            openSet.remove(best);
-            closedSet.add(best);
+    // Tile t grows with the colors at positions t, t + tiles, t + 2*tiles, ...
+    // of the permutation and an rng seeded from rng, so the image does not
+    // depend on the order in which the tiles finish.
+    private void generateTiles(final ColorPermutation colorPermutation, final Canvas canvas, final IndexedEvaluator indexed, Random rng)
+    {
+        int colors = colorPermutation.size();
+        int tiles = tileColumns * tileRows;
+        final int tileWidth = width / tileColumns;
+        final int tileHeight = height / tileRows;
 
-            for(Pixel n : best.neighbours(width,height))
+        final ImageGenerator[] grown = new ImageGenerator[tiles];
+        List<Callable<Void>> jobs = new ArrayList<Callable<Void>>();
+        for(int t = 0; t < tiles; t++)
+        {
+            final int first = t;
+            final int shareSize = (colors - t + tiles - 1) / tiles;
+            final ColorPermutation share = new ColorPermutation()
             {
-                if(!closedSet.contains(n))
+                public int size()
                 {
-                    openSet.add(n);
+                    return shareSize;
                 }
+
+                public int get(int position)
+                {
+                    return colorPermutation.get(first + position * tiles);
+                }
+            };
+
+            final Random tileRng = new Random(rng.nextLong());
+            final int x = (t % tileColumns) * tileWidth;
+            final int y = (t / tileColumns) * tileHeight;
+
+            jobs.add(new Callable<Void>()
+            {
+                public Void call()
+                {
+                    ImageGenerator tile = new ImageGenerator(ImageGenerator.this,tileWidth,tileHeight);
+                    tile.grow(share,new CanvasRegion(canvas,x,y,tileWidth,tileHeight),indexed,tileRng);
+                    grown[first] = tile;
+                    return null;
+                }
+            });
+        }
+
+        ForkJoinPool pool = scanPool != null ? scanPool : ForkJoinPool.commonPool();
+        for(Future<Void> job : pool.invokeAll(jobs))
+        {
+            try
+            {
+                job.get();
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while growing tiles",e);
+            }
+            catch(ExecutionException e)
+            {
+                throw new IllegalStateException("growing a tile failed",e.getCause());
             }
         }
 
-        try
+        // swapping colors across seams does not change which pixels are placed
+        clearPlaced();
+        for(int t = 0; t < tiles; t++)
+        {
+            ImageGenerator tile = grown[t];
+            if(tile.maxX >= tile.minX)
+            {
+                int x = (t % tileColumns) * tileWidth;
+                int y = (t / tileColumns) * tileHeight;
+                placedAt(x + tile.minX,y + tile.minY);
+                placedAt(x + tile.maxX,y + tile.maxY);
+            }
+        }
+
+        reconcileSeams(canvas,indexed,tileWidth,tileHeight);
+    }
+
+    // Every tile grew without seeing its neighbours, so colors along a seam
+    // do not follow each other. For each pair of pixels facing each other
+    // across a seam, the colors are swapped if that lowers the sum of the
+    // evaluator over both pixels; the seams are swept until no swap helps,
+    // at most SEAM_PASSES times, always in the same order.
+    private void reconcileSeams(Canvas canvas, IndexedEvaluator indexed, int tileWidth, int tileHeight)
+    {
+        int[] colors = new int[neighbourhood.size()];
+
+        for(int pass = 0; pass < SEAM_PASSES; pass++)
+        {
+            int swaps = 0;
+
+            for(int x = tileWidth; x < width; x += tileWidth)
+            {
+                for(int y = 0; y < height; y++)
+                {
+                    swaps += trySwap(canvas,indexed,colors,y * width + x - 1,y * width + x);
+                }
+            }
+
+            for(int y = tileHeight; y < height; y += tileHeight)
+            {
+                for(int x = 0; x < width; x++)
+                {
+                    swaps += trySwap(canvas,indexed,colors,(y - 1) * width + x,y * width + x);
+                }
+            }
+
+            if(swaps == 0)
+            {
+                break;
+            }
+        }
+    }
+
+    private int trySwap(Canvas canvas, IndexedEvaluator indexed, int[] colors, int a, int b)
+    {
+        int colorA = canvas.get(a);
+        int colorB = canvas.get(b);
+        if(colorA == 0 || colorB == 0)
+        {
+            return 0;
+        }
+
+        long before = cost(canvas,indexed,colors,a,colorA) + cost(canvas,indexed,colors,b,colorB);
+
+        canvas.set(a,colorB);
+        canvas.set(b,colorA);
+
+        long after = cost(canvas,indexed,colors,a,colorB) + cost(canvas,indexed,colors,b,colorA);
+        if(after < before)
         {
-            ImageIO.write(img,"png",new File(fileName));
+            return 1;
         }
-        catch(Exception e)
+
+        canvas.set(a,colorA);
+        canvas.set(b,colorB);
+
+        return 0;
+    }
+
+    // What the evaluator says about color on pixel, given its placed
+    // neighbours.
+    private long cost(Canvas canvas, IndexedEvaluator indexed, int[] colors, int pixel, int color)
+    {
+        int count = 0;
+        int n = neighbourhood.neighbours(pixel,neighbours);
+        for(int i = 0; i < n; i++)
         {
-            e.printStackTrace();
+            int c = canvas.get(neighbours[i]);
+            if(c != 0)
+            {
+                colors[count++] = c;
+            }
         }
+
+        return indexed.evaluateIndices(color,colors,0,count);
     }
 
-}
+    private void clearPlaced()
+    {
+        minX = width;
+        minY = height;
+        maxX = -1;
+        maxY = -1;
+    }
+
+    private void placedAt(int x, int y)
+    {
+        minX = Math.min(minX,x);
+        minY = Math.min(minY,y);
+        maxX = Math.max(maxX,x);
+        maxY = Math.max(maxY,y);
+    }
+
+    private int fallback(Random rng)
+    {
+        if(strictFrame)
+        {
+            int x = rng.nextInt(width);
+            return rng.nextInt(height) * width + x;
+        }
+        else
+        {
+            return (height/2) * width + width/2;
+        }
+    }
+
+    private void place(int best, int color, Canvas canvas, Frontier openSet, PixelBitmap closedSet, ColorIndex colorIndex)
+    {
+        int previous = canvas.get(best);
+        canvas.set(best,color);
+
+        openSet.remove(best);
+        closedSet.set(best);
+        placedAt(best % width,best / width);
+
+        openSet.placed(best,previous,color);
+
+        int count = neighbourhood.neighbours(best,neighbours);
+        for(int i = 0; i < count; i++)
+        {
+            int n = neighbours[i];
+            if(!closedSet.get(n) && !openSet.contains(n))
+            {
+                openSet.add(n,canvas);
+            }
+        }
+
+        if(colorIndex != null)
+        {
+            if(previous != 0 && previous != color)
+            {
+                colorIndex.setKey(previous,ColorIndex.NO_KEY);
+            }
+            updateKeys(colorIndex,best,canvas,openSet);
+        }
+
+        if(frames != null)
+        {
+            frames.placed(best,color);
+        }
+
+        if(checkpoint != null)
+        {
+            checkpoint.placed(best);
+        }
+    }
+
+    // Takes the next batchSize colors, finds the candidates of all of them in
+    // one frontier scan and places them in permutation order, as long as a
+    // candidate is not on or next to a pixel placed earlier in the same batch.
+    // The others are carried over, in order, to the front of the next batch.
+    // A color without any candidate only gets its fallback pixel when it
+    // comes first, so the first color of a batch is always placed.
+    private void placeBatched(int start, ColorPermutation colorPermutation, Canvas canvas, IndexedEvaluator indexed,
+                              Frontier openSet, PixelBitmap closedSet, Random rng)
+    {
+        int colors = colorPermutation.size();
+        int[] batch = new int[batchSize];
+        int[] placed = new int[batchSize];
+        int pending = 0;
+        int next = start;
+
+        while(pending > 0 || next < colors)
+        {
+            while(pending < batchSize && next < colors)
+            {
+                batch[pending++] = colorPermutation.get(next++);
+            }
+
+            long begin = 0;
+            long evaluations = 0;
+            if(metrics != null)
+            {
+                begin = System.nanoTime();
+                evaluations = scanned.sum();
+            }
+
+            long[] found = BatchScan.best(scanPool,indexed,openSet,batch,pending,scanned);
+
+            long searched = 0;
+            if(metrics != null)
+            {
+                searched = System.nanoTime();
+                evaluations = scanned.sum() - evaluations;
+            }
+
+            int placedCount = 0;
+            int kept = 0;
+            for(int k = 0; k < pending; k++)
+            {
+                int color = batch[k];
+                int best = found[k] == ParallelScan.NONE ? NO_PIXEL : ParallelScan.pixel(found[k]);
+
+                boolean free = best != NO_PIXEL || placedCount == 0;
+                for(int i = 0; i < placedCount && free; i++)
+                {
+                    free = !neighbourhood.near(best,placed[i]);
+                }
+
+                if(!free)
+                {
+                    batch[kept++] = color;
+                    continue;
+                }
+
+                int fallback = fallback(rng);
+                if(best == NO_PIXEL)
+                {
+                    best = fallback;
+                }
+
+                place(best,color,canvas,openSet,closedSet,null);
+                placed[placedCount++] = best;
+
+                if(metrics != null)
+                {
+                    long now = System.nanoTime();
+                    metrics.placed(openSet.size(),placedCount == 1 ? evaluations : 0,placedCount == 1 ? searched - begin : 0,now - searched);
+                    searched = now;
+                }
+            }
+
+            pending = kept;
+        }
+    }
+
+    // Puts the recorded placements back on the canvas, drawing the same
+    // fallback pixels as the original run so that rng ends up where it was.
+    private int replay(ColorPermutation colorPermutation, Canvas canvas, PixelBitmap closedSet, Random rng)
+    {
+        int recorded = checkpoint.recorded();
+        for(int c = 0; c < recorded; c++)
+        {
+            if(strictFrame)
+            {
+                rng.nextInt(width);
+                rng.nextInt(height);
+            }
 
+            int best = checkpoint.next();
+            canvas.set(best,colorPermutation.get(c));
+            closedSet.set(best);
+            placedAt(best % width,best / width);
+        }
+
+        return recorded;
+    }
+
+    // Recomputes the open set and the color index keys from the replayed canvas.
+    // The frontier comes out in a different order than in the original run,
+    // which does not matter as ties go to the smallest pixel.
+    private void rebuild(Canvas canvas, PixelBitmap closedSet, Frontier openSet, ColorIndex colorIndex)
+    {
+        for(int y = 0; y < height; y++)
+        {
+            for(int x = 0; x < width; x++)
+            {
+                int n = y * width + x;
+                if(closedSet.get(n))
+                {
+                    continue;
+                }
+
+                boolean open = false;
+                int count = neighbourhood.neighbours(n,neighbours);
+                for(int i = 0; i < count && !open; i++)
+                {
+                    open = closedSet.get(neighbours[i]);
+                }
+
+                if(open)
+                {
+                    openSet.add(n,canvas);
+                }
+            }
+        }
+
+        if(colorIndex != null)
+        {
+            for(int y = 0; y < height; y++)
+            {
+                for(int x = 0; x < width; x++)
+                {
+                    int color = canvas.get(y * width + x);
+                    if(color != 0)
+                    {
+                        colorIndex.setKey(color,key(y * width + x,openSet));
+                    }
+                }
+            }
+        }
+    }
+
+    // Ties are broken towards the smallest y*width+x so that the result does
+    // not depend on the order of the open set. Open pixels, or whole blocks
+    // of them, whose lower bound is above the best value so far can not win
+    // and are skipped, which gives the same result as looking at all of them.
+    private int scan(IndexedEvaluator indexed, int color, Frontier openSet)
+    {
+        BoundedEvaluator bounded = indexed instanceof BoundedEvaluator ? (BoundedEvaluator) indexed : null;
+        boolean boxed = openSet.bounded();
+
+        int best = NO_PIXEL;
+        int bestValue = Integer.MAX_VALUE;
+        long evaluated = 0;
+        int[] slots = openSet.slots();
+        int stride = openSet.stride();
+        for(int i = 0; i < openSet.size(); i++)
+        {
+            if(boxed)
+            {
+                if(i % Frontier.BLOCK == 0 && openSet.blockLowerBound(color,i / Frontier.BLOCK) > bestValue)
+                {
+                    i += Frontier.BLOCK - 1;
+                    continue;
+                }
+                if(openSet.lowerBound(color,i) > bestValue)
+                {
+                    continue;
+                }
+            }
+
+            evaluated++;
+
+            int p = openSet.pixel(i);
+            int base = i * stride;
+
+            int val;
+            if(bounded != null)
+            {
+                val = bounded.evaluateBounded(color,slots,base + 1,slots[base],bestValue);
+            }
+            else
+            {
+                val = indexed.evaluateIndices(color,slots,base + 1,slots[base]);
+            }
+
+            if(val < bestValue || (val == bestValue && val != Integer.MAX_VALUE && p < best))
+            {
+                bestValue = val;
+                best = p;
+            }
+        }
+
+        scanned.add(evaluated);
+        return best;
+    }
+
+    // The ColorIndex key of a placed color is the smallest open pixel next to it.
+    // Placing best changes the open set around it, which affects the keys of
+    // every color up to two neighbourhood radii away.
+    private void updateKeys(ColorIndex colorIndex, int best, Canvas canvas, Frontier openSet)
+    {
+        int bestX = best % width;
+        int bestY = best / width;
+        int reach = 2 * neighbourhood.radius();
+        for(int y = Math.max(bestY - reach,0); y <= Math.min(bestY + reach,height - 1); y++)
+        {
+            for(int x = Math.max(bestX - reach,0); x <= Math.min(bestX + reach,width - 1); x++)
+            {
+                int color = canvas.get(y * width + x);
+                if(color == 0)
+                {
+                    continue;
+                }
+
+                colorIndex.setKey(color,key(y * width + x,openSet));
+            }
+        }
+    }
+
+    private int key(int pixel, Frontier openSet)
+    {
+        int key = ColorIndex.NO_KEY;
+        int count = neighbourhood.neighbours(pixel,keyNeighbours);
+        for(int i = 0; i < count; i++)
+        {
+            int n = keyNeighbours[i];
+            if(n < key && openSet.contains(n))
+            {
+                key = n;
+            }
+        }
+
+        return key;
+    }
+
+}
@@ -0,0 +1,10 @@
+package ch.infimum.olga;
+
+import java.io.IOException;
+
+// Where ImageGenerator.generate() puts the finished image, a PNG file by
+// default.
+public interface ImageSink
+{
+    public void write(Rendering rendering) throws IOException;
+}
@@ -0,0 +1,9 @@
+
+package ch.infimum.olga;
+
+// Evaluator working on NBitColors palette indices instead of RGB colors. It
+// has to give the same value as evaluating the corresponding RGB colors.
+public interface IndexedEvaluator
+{
+    public int evaluateIndices(int colorIndex, int[] neighbouringIndices, int offset, int count);
+}
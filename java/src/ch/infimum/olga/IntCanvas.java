@@ -0,0 +1,36 @@
+
+package ch.infimum.olga;
+
+public class IntCanvas implements Canvas
+{
+    private int width;
+    private int height;
+    private int[] pixels;
+
+    public IntCanvas(int width, int height)
+    {
+        this.width = width;
+        this.height = height;
+        this.pixels = new int[width * height];
+    }
+
+    public int width()
+    {
+        return width;
+    }
+
+    public int height()
+    {
+        return height;
+    }
+
+    public int get(int pixel)
+    {
+        return pixels[pixel];
+    }
+
+    public void set(int pixel, int value)
+    {
+        pixels[pixel] = value;
+    }
+}
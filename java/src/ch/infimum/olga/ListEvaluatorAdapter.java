@@ -0,0 +1,27 @@
+
+package ch.infimum.olga;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Lets a List based Evaluator be used where a SliceEvaluator is expected.
+public class ListEvaluatorAdapter implements SliceEvaluator
+{
+    private Evaluator evaluator;
+
+    public ListEvaluatorAdapter(Evaluator evaluator)
+    {
+        this.evaluator = evaluator;
+    }
+
+    public int evaluate(int color, int[] neighbouringColors, int offset, int count)
+    {
+        List<Integer> nColors = new ArrayList<Integer>(count);
+        for(int i = offset; i < offset + count; i++)
+        {
+            nColors.add(neighbouringColors[i]);
+        }
+
+        return evaluator.evaluate(color,nColors);
+    }
+}
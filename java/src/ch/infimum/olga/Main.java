@@ -1,12 +1,17 @@
 
 package ch.infimum.olga;
 
-import java.util.List;
+import java.io.File;
+import java.io.IOException;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 public class Main
 {
-    public static void main(String[] args)
+    private static final int BITS_PER_CHANNEL = 6;
+    private static final boolean STRICT_FRAME = true;
+
+    public static void main(String[] args) throws IOException
     {
 
         if(args.length == 0)
@@ -17,36 +22,147 @@ public class Main
 
         String name = args[0];
 
+        ImageGenerator generator = generator(name);
+        ForkJoinPool pool = new ForkJoinPool();
+        generator.setScanPool(pool);
+
+        // an interval as second argument makes the run resumable
+        if(args.length > 1)
+        {
+            generator.setCheckpoint(new File(name + ".png.checkpoint"),Integer.parseInt(args[1]));
+        }
+
+        // -Dolga.progress=seconds prints a progress line that often and
+        // exposes the run over JMX
+        long progress = Long.getLong("olga.progress",0);
+        if(progress > 0)
+        {
+            GenerationMetrics metrics = new GenerationMetrics(name);
+            metrics.setProgress(System.out,progress * 1000);
+            metrics.register();
+            generator.setMetrics(metrics);
+        }
+
+        // -Dolga.frames=placements records a frame that often, as PNGs in
+        // the directory name.frames or, with -Dolga.gif=true, as name.gif
+        int frames = Integer.getInteger("olga.frames",0);
+        if(frames > 0)
+        {
+            if(Boolean.getBoolean("olga.gif"))
+            {
+                generator.setFrames(FrameRecorder.gif(new File(name + ".gif"),frames,40));
+            }
+            else
+            {
+                generator.setFrames(FrameRecorder.pngSequence(new File(name + ".frames"),frames));
+            }
+        }
+
+        // -Dolga.samples=n renders a quick preview, evaluating every color on
+        // n sampled open pixels and the -Dolga.beam best ones (8 by default)
+        // of the color before
+        int samples = Integer.getInteger("olga.samples",0);
+        if(samples > 0)
+        {
+            generator.setSampling(samples,Integer.getInteger("olga.beam",8));
+        }
+
+        // -Dolga.deflate=level encodes name.png with PngWriter at that
+        // compression level, on all cores
+        String deflate = System.getProperty("olga.deflate");
+        if(deflate != null)
+        {
+            generator.setSink(new FileSink(new File(name + ".png"),new PngWriter(Integer.parseInt(deflate),pool)));
+        }
+
+        // generators gonna generate .-P
+        generator.generate();
+    }
+
+    // The generator for name, writing to name.png. Everything about the image
+    // follows from name; the scan pool and the other modes are left to the
+    // caller.
+    public static ImageGenerator generator(String name)
+    {
         StringBuilder pngName = new StringBuilder(name);
         pngName.append(".png");
 
-        Random rng = new Random(name.hashCode());
+        return generator(name,pngName.toString());
+    }
 
-        Evaluator[] evaluators = {new MinDistanceEvaluator(), new MinBrightnessDifferenceEvaluator(),
-                                  new MinWarmthDiffEvaluator(), new MinHammingDistEvaluator(), new ChebyshevDistEvaluator(),
-                                  new TaxiCabEvaluator(), new MinkowskiDistEvaluator(rng.nextFloat()*20), new DamerauDistEvaluator(),
-                                  new HellingerDistEvaluator(),
-                                  new KullbackDistEvaluator(), new HueEvaluator()};
+    public static ImageGenerator generator(String name, String pngName)
+    {
+        Random rng = new Random(name.hashCode());
 
-        Evaluator eval = evaluators[rng.nextInt(evaluators.length)];
+        SliceEvaluator eval = evaluator(rng);
         boolean strictFrame = rng.nextBoolean();
 
-        ImageGenerator generator = new ImageGenerator(6,pngName.toString(),rng,eval,true);
+        return new ImageGenerator(BITS_PER_CHANNEL,pngName,rng,eval,STRICT_FRAME);
+    }
 
-        // generators gonna generate .-P
-        generator.generate();
+    // What generator(name) renders name with, one per line: the bits per
+    // channel, the evaluator and whether the frame is strict, without
+    // building the generator.
+    public static String parameters(String name)
+    {
+        Random rng = new Random(name.hashCode());
+
+        return BITS_PER_CHANNEL + "\n" + evaluator(rng).getClass().getName() + "\n" + STRICT_FRAME;
+    }
+
+    // draws from rng what generator() has always drawn for the evaluator
+    private static SliceEvaluator evaluator(Random rng)
+    {
+        PaletteTable table = PaletteTable.forBitsPerChannel(BITS_PER_CHANNEL);
+
+        SliceEvaluator[] evaluators = {new MinDistanceEvaluator(table), new MinBrightnessDifferenceEvaluator(table),
+                                       new MinWarmthDiffEvaluator(table), new MinHammingDistEvaluator(), new ChebyshevDistEvaluator(table),
+                                       new TaxiCabEvaluator(table), new MinkowskiDistEvaluator(table,rng.nextFloat()*20), new DamerauDistEvaluator(table),
+                                       new HellingerDistEvaluator(table),
+                                       new KullbackDistEvaluator(table), new HueEvaluator(table)};
+
+        return evaluators[rng.nextInt(evaluators.length)];
     }
 }
 
-class MinDistanceEvaluator implements Evaluator
+class MinDistanceEvaluator implements ChannelDistanceEvaluator, IndexedEvaluator
 {
-    public int evaluate(int color, List<Integer> nColors)
+    private PaletteTable table;
+
+    public MinDistanceEvaluator(PaletteTable table)
+    {
+        this.table = table;
+    }
+
+    public int channelDistance(int dRed, int dGreen, int dBlue)
+    {
+        return dRed*dRed + dGreen*dGreen + dBlue*dBlue;
+    }
+
+    public int evaluate(int color, int[] nColors, int offset, int count)
     {
         int min = Integer.MAX_VALUE;
-        for(int neigh : nColors)
+        for(int i = offset; i < offset + count; i++)
         {
             
-            int dist = NBitColors.euclideanDistance(color,neigh);
+            int dist = NBitColors.euclideanDistance(color,nColors[i]);
+
+            if(dist < min)
+            {
+                min = dist;
+            }
+        }
+
+        return min;
+    }
+
+    public int evaluateIndices(int colorIndex, int[] nIndices, int offset, int count)
+    {
+        int min = Integer.MAX_VALUE;
+
+        for(int i = offset; i < offset + count; i++)
+        {
+            int dist = table.euclideanDistance(colorIndex,nIndices[i]);
 
             if(dist < min)
             {
@@ -58,38 +174,95 @@ class MinDistanceEvaluator implements Evaluator
     }
 }
 
-class AvgDistanceEvaluator implements Evaluator
+class AvgDistanceEvaluator implements SliceEvaluator, BoundedEvaluator
 {
-    public int evaluate(int color, List<Integer> nColors)
+    private PaletteTable table;
+
+    public AvgDistanceEvaluator(PaletteTable table)
+    {
+        this.table = table;
+    }
+
+    public int evaluate(int color, int[] nColors, int offset, int count)
+    {
+        int acc = 0;
+
+        for(int i = offset; i < offset + count; i++)
+        {
+            acc += NBitColors.euclideanDistance(color,nColors[i]);
+        }
+
+        if(count == 0)
+        {
+            return 0;
+        }
+        else
+        {
+            return acc / count;
+        }
+    }
+
+    public int evaluateIndices(int colorIndex, int[] nIndices, int offset, int count)
     {
         int acc = 0;
 
-        for(int n : nColors)
+        for(int i = offset; i < offset + count; i++)
         {
-            acc += NBitColors.euclideanDistance(color,n);
+            acc += table.euclideanDistance(colorIndex,nIndices[i]);
         }
 
-        int size = nColors.size();
-        if(size == 0)
+        if(count == 0)
         {
             return 0;
         }
         else
         {
-            return acc / size;
+            return acc / count;
         }
     }
+
+    public int evaluateBounded(int colorIndex, int[] nIndices, int offset, int count, int bound)
+    {
+        if(count == 0)
+        {
+            return 0;
+        }
+
+        // the terms are not negative, past limit the average stays above bound
+        long limit = ((long) bound + 1) * count;
+        int acc = 0;
+
+        for(int i = offset; i < offset + count; i++)
+        {
+            acc += table.euclideanDistance(colorIndex,nIndices[i]);
+
+            if(acc >= limit)
+            {
+                return bound + 1;
+            }
+        }
+
+        return acc / count;
+    }
 }
 
-class MinBrightnessDifferenceEvaluator implements Evaluator
+class MinBrightnessDifferenceEvaluator implements SliceEvaluator, BoxBoundedEvaluator, PropertyDistanceEvaluator
 {
-    public int evaluate(int color, List<Integer> nColors)
+    private int[] brightness;
+
+    public MinBrightnessDifferenceEvaluator(PaletteTable table)
     {
+        this.brightness = table.property(ColorProperty.BRIGHTNESS);
+    }
+
+    public int evaluate(int color, int[] nColors, int offset, int count)
+    {
+        int key = NBitColors.brightness(color);
         int min = Integer.MAX_VALUE;
 
-        for(int n : nColors)
+        for(int i = offset; i < offset + count; i++)
         {
-            int diff = NBitColors.brightness(color) - NBitColors.brightness(n);
+            int diff = key - NBitColors.brightness(nColors[i]);
             diff = Math.abs(diff);
 
             if(diff < min)
@@ -100,41 +273,135 @@ class MinBrightnessDifferenceEvaluator implements Evaluator
 
         return min;
     }
+
+    public int evaluateIndices(int colorIndex, int[] nIndices, int offset, int count)
+    {
+        int key = brightness[colorIndex];
+        int min = Integer.MAX_VALUE;
+
+        for(int i = offset; i < offset + count; i++)
+        {
+            int diff = key - brightness[nIndices[i]];
+            diff = Math.abs(diff);
+
+            if(diff < min)
+            {
+                min = diff;
+            }
+        }
+
+        return min;
+    }
+
+    public int property(int colorIndex)
+    {
+        return brightness[colorIndex];
+    }
+
+    public int coordinate(int colorIndex, int axis)
+    {
+        return axis == 0 ? brightness[colorIndex] : 0;
+    }
+
+    public int lowerBound(int colorIndex, int[] boxes, int offset)
+    {
+        int key = brightness[colorIndex];
+        return Math.max(0,Math.max(boxes[offset] - key,key - boxes[offset + 1]));
+    }
 }
 
-class AvgBrightnessDifferenceEvaluator implements Evaluator
+class AvgBrightnessDifferenceEvaluator implements SliceEvaluator, BoundedEvaluator
 {
-    public int evaluate(int color, List<Integer> nColors)
+    private int[] brightness;
+
+    public AvgBrightnessDifferenceEvaluator(PaletteTable table)
+    {
+        this.brightness = table.property(ColorProperty.BRIGHTNESS);
+    }
+
+    public int evaluate(int color, int[] nColors, int offset, int count)
     {
+        int key = NBitColors.brightness(color);
         int acc = 0;
 
-        for(int n : nColors)
+        for(int i = offset; i < offset + count; i++)
         {
-            acc += Math.abs(NBitColors.brightness(color) - NBitColors.brightness(n));
+            acc += Math.abs(key - NBitColors.brightness(nColors[i]));
         }
 
-        int size = nColors.size();
+        if(count == 0)
+        {
+            return 0;
+        }
+        else
+        {
+            return acc / count;
+        }
+    }
+
+    public int evaluateIndices(int colorIndex, int[] nIndices, int offset, int count)
+    {
+        int key = brightness[colorIndex];
+        int acc = 0;
+
+        for(int i = offset; i < offset + count; i++)
+        {
+            acc += Math.abs(key - brightness[nIndices[i]]);
+        }
 
-        if(size == 0)
+        if(count == 0)
         {
             return 0;
         }
         else
         {
-            return acc / size;
+            return acc / count;
+        }
+    }
+
+    public int evaluateBounded(int colorIndex, int[] nIndices, int offset, int count, int bound)
+    {
+        if(count == 0)
+        {
+            return 0;
+        }
+
+        int key = brightness[colorIndex];
+        // the terms are not negative, past limit the average stays above bound
+        long limit = ((long) bound + 1) * count;
+        int acc = 0;
+
+        for(int i = offset; i < offset + count; i++)
+        {
+            acc += Math.abs(key - brightness[nIndices[i]]);
+
+            if(acc >= limit)
+            {
+                return bound + 1;
+            }
         }
+
+        return acc / count;
     }
 }
 
-class MinWarmthDiffEvaluator implements Evaluator
+class MinWarmthDiffEvaluator implements SliceEvaluator, BoxBoundedEvaluator, PropertyDistanceEvaluator
 {
-    public int evaluate(int color, List<Integer> nColors)
+    private int[] warmth;
+
+    public MinWarmthDiffEvaluator(PaletteTable table)
+    {
+        this.warmth = table.property(ColorProperty.WARMTH);
+    }
+
+    public int evaluate(int color, int[] nColors, int offset, int count)
     {
+        int key = NBitColors.warmth(color);
         int min = Integer.MAX_VALUE;
 
-        for(int n : nColors)
+        for(int i = offset; i < offset + count; i++)
         {
-            int diff = NBitColors.warmth(color) - NBitColors.warmth(n);
+            int diff = key - NBitColors.warmth(nColors[i]);
             diff = Math.abs(diff);
 
             if(diff < min)
@@ -145,42 +412,146 @@ class MinWarmthDiffEvaluator implements Evaluator
 
         return min;
     }
+
+    public int evaluateIndices(int colorIndex, int[] nIndices, int offset, int count)
+    {
+        int key = warmth[colorIndex];
+        int min = Integer.MAX_VALUE;
+
+        for(int i = offset; i < offset + count; i++)
+        {
+            int diff = key - warmth[nIndices[i]];
+            diff = Math.abs(diff);
+
+            if(diff < min)
+            {
+                min = diff;
+            }
+        }
+
+        return min;
+    }
+
+    public int property(int colorIndex)
+    {
+        return warmth[colorIndex];
+    }
+
+    public int coordinate(int colorIndex, int axis)
+    {
+        return axis == 0 ? warmth[colorIndex] : 0;
+    }
+
+    public int lowerBound(int colorIndex, int[] boxes, int offset)
+    {
+        int key = warmth[colorIndex];
+        return Math.max(0,Math.max(boxes[offset] - key,key - boxes[offset + 1]));
+    }
 }
 
-class AvgWarmthDiffEvaluator implements Evaluator
+class AvgWarmthDiffEvaluator implements SliceEvaluator, BoundedEvaluator
 {
-    public int evaluate(int color, List<Integer> nColors)
+    private int[] warmth;
+
+    public AvgWarmthDiffEvaluator(PaletteTable table)
+    {
+        this.warmth = table.property(ColorProperty.WARMTH);
+    }
+
+    public int evaluate(int color, int[] nColors, int offset, int count)
     {
+        int key = NBitColors.warmth(color);
         int acc = 0;
 
-        for(int n : nColors)
+        for(int i = offset; i < offset + count; i++)
         {
-            acc += Math.abs(NBitColors.warmth(color) - NBitColors.warmth(n));
+            acc += Math.abs(key - NBitColors.warmth(nColors[i]));
         }
 
-        int size = nColors.size();
+        if(count == 0)
+        {
+            return 0;
+        }
+        else
+        {
+            return acc / count;
+        }
+    }
+
+    public int evaluateIndices(int colorIndex, int[] nIndices, int offset, int count)
+    {
+        int key = warmth[colorIndex];
+        int acc = 0;
+
+        for(int i = offset; i < offset + count; i++)
+        {
+            acc += Math.abs(key - warmth[nIndices[i]]);
+        }
 
-        if(size == 0)
+        if(count == 0)
         {
             return 0;
         }
         else
         {
-            return acc / size;
+            return acc / count;
+        }
+    }
+
+    public int evaluateBounded(int colorIndex, int[] nIndices, int offset, int count, int bound)
+    {
+        if(count == 0)
+        {
+            return 0;
+        }
+
+        int key = warmth[colorIndex];
+        // the terms are not negative, past limit the average stays above bound
+        long limit = ((long) bound + 1) * count;
+        int acc = 0;
+
+        for(int i = offset; i < offset + count; i++)
+        {
+            acc += Math.abs(key - warmth[nIndices[i]]);
+
+            if(acc >= limit)
+            {
+                return bound + 1;
+            }
         }
+
+        return acc / count;
     }
 }
 
-class MinHammingDistEvaluator implements Evaluator
+class MinHammingDistEvaluator implements SliceEvaluator, IndexedEvaluator
 {
-    public int evaluate(int color, List<Integer> nColors)
+    public int evaluate(int color, int[] nColors, int offset, int count)
     {
         int min = Integer.MAX_VALUE;
 
-        for(int n : nColors)
+        for(int i = offset; i < offset + count; i++)
         {
 
-            int dist = NBitColors.hammingDist(color,n);
+            int dist = NBitColors.hammingDist(color,nColors[i]);
+
+            if(dist < min)
+            {
+                min = dist;
+            }
+        }
+
+        return min;
+    }
+
+    public int evaluateIndices(int colorIndex, int[] nIndices, int offset, int count)
+    {
+        // indices hold the same bits as the colors, only packed closer
+        int min = Integer.MAX_VALUE;
+
+        for(int i = offset; i < offset + count; i++)
+        {
+            int dist = NBitColors.hammingDist(colorIndex,nIndices[i]);
 
             if(dist < min)
             {
@@ -192,37 +563,101 @@ class MinHammingDistEvaluator implements Evaluator
     }
 }
 
-class AvgHammingDistEvaluator implements Evaluator
+class AvgHammingDistEvaluator implements SliceEvaluator, BoundedEvaluator
 {
-    public int evaluate(int color, List<Integer> nColors)
+    public int evaluate(int color, int[] nColors, int offset, int count)
     {
         int acc = 0;
 
-        for(int n : nColors)
+        for(int i = offset; i < offset + count; i++)
         {
-            acc += NBitColors.hammingDist(color,n);
+            acc += NBitColors.hammingDist(color,nColors[i]);
         }
 
-        int size = nColors.size();
-        if(size == 0)
+        if(count == 0)
         {
             return 0;
         }
         else
         {
-            return acc / size;
+            return acc / count;
+        }
+    }
+
+    public int evaluateIndices(int colorIndex, int[] nIndices, int offset, int count)
+    {
+        // indices hold the same bits as the colors, only packed closer
+        int acc = 0;
+
+        for(int i = offset; i < offset + count; i++)
+        {
+            acc += NBitColors.hammingDist(colorIndex,nIndices[i]);
+        }
+
+        if(count == 0)
+        {
+            return 0;
+        }
+        else
+        {
+            return acc / count;
+        }
+    }
+
+    public int evaluateBounded(int colorIndex, int[] nIndices, int offset, int count, int bound)
+    {
+        if(count == 0)
+        {
+            return 0;
+        }
+
+        // the terms are not negative, past limit the average stays above bound
+        long limit = ((long) bound + 1) * count;
+        int acc = 0;
+
+        for(int i = offset; i < offset + count; i++)
+        {
+            acc += NBitColors.hammingDist(colorIndex,nIndices[i]);
+
+            if(acc >= limit)
+            {
+                return bound + 1;
+            }
         }
+
+        return acc / count;
     }
 }
 
-class ChebyshevDistEvaluator implements Evaluator
+class ChebyshevDistEvaluator implements ChannelDistanceEvaluator, IndexedEvaluator
 {
 
-    public int evaluate(int color, List<Integer> nColors) {
+    private PaletteTable table;
+
+    public ChebyshevDistEvaluator(PaletteTable table) {
+        this.table = table;
+    }
+
+    public int channelDistance(int dRed, int dGreen, int dBlue) {
+        return Math.max(Math.abs(dRed),Math.max(Math.abs(dGreen),Math.abs(dBlue)));
+    }
+
+    public int evaluate(int color, int[] nColors, int offset, int count) {
+
+        int min = Integer.MAX_VALUE;
+        for(int i = offset; i < offset + count; i++) {
+            int dist = NBitColors.chebyshevDist(color,nColors[i]);
+            if(dist < min) min = dist;
+        }
+
+        return min;
+    }
+
+    public int evaluateIndices(int colorIndex, int[] nIndices, int offset, int count) {
 
         int min = Integer.MAX_VALUE;
-        for(int neigh : nColors) {
-            int dist = NBitColors.chebyshevDist(color,neigh);
+        for(int i = offset; i < offset + count; i++) {
+            int dist = table.chebyshevDist(colorIndex,nIndices[i]);
             if(dist < min) min = dist;
         }
 
@@ -231,14 +666,35 @@ class ChebyshevDistEvaluator implements Evaluator
 
 }
 
-class TaxiCabEvaluator implements Evaluator
+class TaxiCabEvaluator implements ChannelDistanceEvaluator, IndexedEvaluator
 {
 
-    public int evaluate(int color, List<Integer> nColors) {
+    private PaletteTable table;
+
+    public TaxiCabEvaluator(PaletteTable table) {
+        this.table = table;
+    }
+
+    public int channelDistance(int dRed, int dGreen, int dBlue) {
+        return Math.abs(dRed) + Math.abs(dGreen) + Math.abs(dBlue);
+    }
+
+    public int evaluate(int color, int[] nColors, int offset, int count) {
+
+        int min = Integer.MAX_VALUE;
+        for(int i = offset; i < offset + count; i++) {
+            int dist = NBitColors.taxiCab(color,nColors[i]);
+            if(dist < min) min = dist;
+        }
+
+        return min;
+    }
+
+    public int evaluateIndices(int colorIndex, int[] nIndices, int offset, int count) {
 
         int min = Integer.MAX_VALUE;
-        for(int neigh : nColors) {
-            int dist = NBitColors.taxiCab(color,neigh);
+        for(int i = offset; i < offset + count; i++) {
+            int dist = table.taxiCab(colorIndex,nIndices[i]);
             if(dist < min) min = dist;
         }
 
@@ -247,36 +703,103 @@ class TaxiCabEvaluator implements Evaluator
 
 }
 
-class MinkowskiDistEvaluator implements Evaluator
+class MinkowskiDistEvaluator implements SliceEvaluator, BoundedEvaluator, BoxBoundedEvaluator
 {
 
+    private PaletteTable table;
     private double k;
 
-    public MinkowskiDistEvaluator(double k2) {
+    public MinkowskiDistEvaluator(PaletteTable table, double k2) {
+        this.table = table;
         k = k2;
     }
 
-    public int evaluate(int color, List<Integer> nColors) {
+    public int evaluate(int color, int[] nColors, int offset, int count) {
+
+        int min = Integer.MAX_VALUE;
+        for(int i = offset; i < offset + count; i++) {
+            int dist = NBitColors.minkowskiDist(color,nColors[i],k);
+            if(dist < min) min = dist;
+        }
+
+        return min;
+    }
+
+    public int evaluateIndices(int colorIndex, int[] nIndices, int offset, int count) {
+
+        int color = table.color(colorIndex);
+        int min = Integer.MAX_VALUE;
+        for(int i = offset; i < offset + count; i++) {
+            int dist = NBitColors.minkowskiDist(color,table.color(nIndices[i]),k);
+            if(dist < min) min = dist;
+        }
+
+        return min;
+    }
+
+    // The distance is at least the largest channel difference, minus one for
+    // the rounding of the powers. Neighbours that can not get below min or
+    // bound that way are not worth the powers.
+    public int evaluateBounded(int colorIndex, int[] nIndices, int offset, int count, int bound) {
 
+        int color = table.color(colorIndex);
         int min = Integer.MAX_VALUE;
-        for(int neigh : nColors) {
-            int dist = NBitColors.minkowskiDist(color,neigh,k);
+        for(int i = offset; i < offset + count; i++) {
+            int other = table.color(nIndices[i]);
+            int lower = table.chebyshevDist(colorIndex,nIndices[i]) - 1;
+            if(lower >= min || lower > bound) continue;
+
+            int dist = NBitColors.minkowskiDist(color,other,k);
             if(dist < min) min = dist;
         }
 
         return min;
     }
 
+    public int coordinate(int colorIndex, int axis) {
+        return (table.color(colorIndex) >> (16 - 8 * axis)) & 0xFF;
+    }
+
+    public int lowerBound(int colorIndex, int[] boxes, int offset) {
+
+        int color = table.color(colorIndex);
+        int lower = 0;
+        for(int axis = 0; axis < 3; axis++) {
+            int c = (color >> (16 - 8 * axis)) & 0xFF;
+            lower = Math.max(lower,Math.max(boxes[offset + 2 * axis] - c,c - boxes[offset + 2 * axis + 1]));
+        }
+
+        return Math.max(0,lower - 1);
+    }
+
 }
 
-class DamerauDistEvaluator implements Evaluator
+class DamerauDistEvaluator implements SliceEvaluator, IndexedEvaluator
 {
 
-    public int evaluate(int color, List<Integer> nColors) {
+    private PaletteTable table;
+
+    public DamerauDistEvaluator(PaletteTable table) {
+        this.table = table;
+    }
+
+    public int evaluate(int color, int[] nColors, int offset, int count) {
 
         int min = Integer.MAX_VALUE;
-        for(int neigh : nColors) {
-            int dist = NBitColors.damerauDist(color,neigh);
+        for(int i = offset; i < offset + count; i++) {
+            int dist = NBitColors.damerauDist(color,nColors[i]);
+            if(dist < min) min = dist;
+        }
+
+        return min;
+    }
+
+    public int evaluateIndices(int colorIndex, int[] nIndices, int offset, int count) {
+
+        int color = table.color(colorIndex);
+        int min = Integer.MAX_VALUE;
+        for(int i = offset; i < offset + count; i++) {
+            int dist = NBitColors.damerauDist(color,table.color(nIndices[i]));
             if(dist < min) min = dist;
         }
 
@@ -285,14 +808,32 @@ class DamerauDistEvaluator implements Evaluator
 
 }
 
-class JaccardDistEvaluator implements Evaluator
+class JaccardDistEvaluator implements SliceEvaluator, IndexedEvaluator
 {
 
-    public int evaluate(int color, List<Integer> nColors) {
+    private PaletteTable table;
+
+    public JaccardDistEvaluator(PaletteTable table) {
+        this.table = table;
+    }
+
+    public int evaluate(int color, int[] nColors, int offset, int count) {
+
+        int min = Integer.MAX_VALUE;
+        for(int i = offset; i < offset + count; i++) {
+            int dist = NBitColors.jaccardDist(color,nColors[i]);
+            if(dist < min) min = dist;
+        }
+
+        return min;
+    }
+
+    public int evaluateIndices(int colorIndex, int[] nIndices, int offset, int count) {
 
+        int color = table.color(colorIndex);
         int min = Integer.MAX_VALUE;
-        for(int neigh : nColors) {
-            int dist = NBitColors.jaccardDist(color,neigh);
+        for(int i = offset; i < offset + count; i++) {
+            int dist = NBitColors.jaccardDist(color,table.color(nIndices[i]));
             if(dist < min) min = dist;
         }
 
@@ -301,15 +842,23 @@ class JaccardDistEvaluator implements Evaluator
 
 }
 
-class ChromaDifEvaluator implements Evaluator
+class ChromaDifEvaluator implements SliceEvaluator, BoxBoundedEvaluator, PropertyDistanceEvaluator
 {
-    public int evaluate(int color, List<Integer> nColors)
+    private int[] chroma;
+
+    public ChromaDifEvaluator(PaletteTable table)
+    {
+        this.chroma = table.property(ColorProperty.CHROMA);
+    }
+
+    public int evaluate(int color, int[] nColors, int offset, int count)
     {
+        int key = NBitColors.chroma(color);
         int min = Integer.MAX_VALUE;
 
-        for(int n : nColors)
+        for(int i = offset; i < offset + count; i++)
         {
-            int diff = NBitColors.chroma(color) - NBitColors.chroma(n);
+            int diff = key - NBitColors.chroma(nColors[i]);
             diff = Math.abs(diff);
 
             if(diff < min)
@@ -320,17 +869,60 @@ class ChromaDifEvaluator implements Evaluator
 
         return min;
     }
+
+    public int evaluateIndices(int colorIndex, int[] nIndices, int offset, int count)
+    {
+        int key = chroma[colorIndex];
+        int min = Integer.MAX_VALUE;
+
+        for(int i = offset; i < offset + count; i++)
+        {
+            int diff = key - chroma[nIndices[i]];
+            diff = Math.abs(diff);
+
+            if(diff < min)
+            {
+                min = diff;
+            }
+        }
+
+        return min;
+    }
+
+    public int property(int colorIndex)
+    {
+        return chroma[colorIndex];
+    }
+
+    public int coordinate(int colorIndex, int axis)
+    {
+        return axis == 0 ? chroma[colorIndex] : 0;
+    }
+
+    public int lowerBound(int colorIndex, int[] boxes, int offset)
+    {
+        int key = chroma[colorIndex];
+        return Math.max(0,Math.max(boxes[offset] - key,key - boxes[offset + 1]));
+    }
 }
 
-class LuminanceDifEvaluator implements Evaluator
+class LuminanceDifEvaluator implements SliceEvaluator, BoxBoundedEvaluator, PropertyDistanceEvaluator
 {
-    public int evaluate(int color, List<Integer> nColors)
+    private int[] luminance;
+
+    public LuminanceDifEvaluator(PaletteTable table)
+    {
+        this.luminance = table.property(ColorProperty.LUMINANCE);
+    }
+
+    public int evaluate(int color, int[] nColors, int offset, int count)
     {
+        int key = NBitColors.luminance(color);
         int min = Integer.MAX_VALUE;
 
-        for(int n : nColors)
+        for(int i = offset; i < offset + count; i++)
         {
-            int diff = NBitColors.luminance(color) - NBitColors.luminance(n);
+            int diff = key - NBitColors.luminance(nColors[i]);
             diff = Math.abs(diff);
 
             if(diff < min)
@@ -341,17 +933,79 @@ class LuminanceDifEvaluator implements Evaluator
 
         return min;
     }
+
+    public int evaluateIndices(int colorIndex, int[] nIndices, int offset, int count)
+    {
+        int key = luminance[colorIndex];
+        int min = Integer.MAX_VALUE;
+
+        for(int i = offset; i < offset + count; i++)
+        {
+            int diff = key - luminance[nIndices[i]];
+            diff = Math.abs(diff);
+
+            if(diff < min)
+            {
+                min = diff;
+            }
+        }
+
+        return min;
+    }
+
+    public int property(int colorIndex)
+    {
+        return luminance[colorIndex];
+    }
+
+    public int coordinate(int colorIndex, int axis)
+    {
+        return axis == 0 ? luminance[colorIndex] : 0;
+    }
+
+    public int lowerBound(int colorIndex, int[] boxes, int offset)
+    {
+        int key = luminance[colorIndex];
+        return Math.max(0,Math.max(boxes[offset] - key,key - boxes[offset + 1]));
+    }
 }
 
-class SaturationEvaluator implements Evaluator
+class SaturationEvaluator implements SliceEvaluator, BoxBoundedEvaluator, PropertyDistanceEvaluator
 {
-    public int evaluate(int color, List<Integer> nColors)
+    private int[] saturation;
+
+    public SaturationEvaluator(PaletteTable table)
+    {
+        this.saturation = table.property(ColorProperty.SATURATION);
+    }
+
+    public int evaluate(int color, int[] nColors, int offset, int count)
+    {
+        int key = NBitColors.saturation(color);
+        int min = Integer.MAX_VALUE;
+
+        for(int i = offset; i < offset + count; i++)
+        {
+            int diff = key - NBitColors.saturation(nColors[i]);
+            diff = Math.abs(diff);
+
+            if(diff < min)
+            {
+                min = diff;
+            }
+        }
+
+        return min;
+    }
+
+    public int evaluateIndices(int colorIndex, int[] nIndices, int offset, int count)
     {
+        int key = saturation[colorIndex];
         int min = Integer.MAX_VALUE;
 
-        for(int n : nColors)
+        for(int i = offset; i < offset + count; i++)
         {
-            int diff = NBitColors.saturation(color) - NBitColors.saturation(n);
+            int diff = key - saturation[nIndices[i]];
             diff = Math.abs(diff);
 
             if(diff < min)
@@ -362,17 +1016,60 @@ class SaturationEvaluator implements Evaluator
 
         return min;
     }
+
+    public int property(int colorIndex)
+    {
+        return saturation[colorIndex];
+    }
+
+    public int coordinate(int colorIndex, int axis)
+    {
+        return axis == 0 ? saturation[colorIndex] : 0;
+    }
+
+    public int lowerBound(int colorIndex, int[] boxes, int offset)
+    {
+        int key = saturation[colorIndex];
+        return Math.max(0,Math.max(boxes[offset] - key,key - boxes[offset + 1]));
+    }
 }
 
-class LumaEvaluator implements Evaluator
+class LumaEvaluator implements SliceEvaluator, BoxBoundedEvaluator, PropertyDistanceEvaluator
 {
-    public int evaluate(int color, List<Integer> nColors)
+    private int[] luma;
+
+    public LumaEvaluator(PaletteTable table)
+    {
+        this.luma = table.property(ColorProperty.LUMA);
+    }
+
+    public int evaluate(int color, int[] nColors, int offset, int count)
+    {
+        int key = NBitColors.luma(color);
+        int min = Integer.MAX_VALUE;
+
+        for(int i = offset; i < offset + count; i++)
+        {
+            int diff = key - NBitColors.luma(nColors[i]);
+            diff = Math.abs(diff);
+
+            if(diff < min)
+            {
+                min = diff;
+            }
+        }
+
+        return min;
+    }
+
+    public int evaluateIndices(int colorIndex, int[] nIndices, int offset, int count)
     {
+        int key = luma[colorIndex];
         int min = Integer.MAX_VALUE;
 
-        for(int n : nColors)
+        for(int i = offset; i < offset + count; i++)
         {
-            int diff = NBitColors.luma(color) - NBitColors.luma(n);
+            int diff = key - luma[nIndices[i]];
             diff = Math.abs(diff);
 
             if(diff < min)
@@ -383,49 +1080,154 @@ class LumaEvaluator implements Evaluator
 
         return min;
     }
+
+    public int property(int colorIndex)
+    {
+        return luma[colorIndex];
+    }
+
+    public int coordinate(int colorIndex, int axis)
+    {
+        return axis == 0 ? luma[colorIndex] : 0;
+    }
+
+    public int lowerBound(int colorIndex, int[] boxes, int offset)
+    {
+        int key = luma[colorIndex];
+        return Math.max(0,Math.max(boxes[offset] - key,key - boxes[offset + 1]));
+    }
 }
 
-class HellingerDistEvaluator implements Evaluator
+class HellingerDistEvaluator implements SliceEvaluator, BoxBoundedEvaluator
 {
 
-    public int evaluate(int color, List<Integer> nColors) {
+    private PaletteTable table;
+
+    public HellingerDistEvaluator(PaletteTable table) {
+        this.table = table;
+    }
+
+    public int evaluate(int color, int[] nColors, int offset, int count) {
 
         int min = Integer.MAX_VALUE;
-        for(int neigh : nColors) {
-            int dist = NBitColors.hellingerDist(color,neigh);
+        for(int i = offset; i < offset + count; i++) {
+            int dist = NBitColors.hellingerDist(color,nColors[i]);
             if(dist < min) min = dist;
         }
 
         return min;
     }
 
+    public int evaluateIndices(int colorIndex, int[] nIndices, int offset, int count) {
+
+        int color = table.color(colorIndex);
+        int min = Integer.MAX_VALUE;
+        for(int i = offset; i < offset + count; i++) {
+            int dist = NBitColors.hellingerDist(color,table.color(nIndices[i]));
+            if(dist < min) min = dist;
+        }
+
+        return min;
+    }
+
+    public int coordinate(int colorIndex, int axis) {
+        return (table.color(colorIndex) >> (16 - 8 * axis)) & 0xFF;
+    }
+
+    // Every channel's part of the distance grows with how far the square roots
+    // are apart, so the closest color the box allows on every channel gives a
+    // lower bound.
+    public int lowerBound(int colorIndex, int[] boxes, int offset) {
+
+        int closest = 0;
+        for(int axis = 0; axis < 3; axis++) {
+            int lo = boxes[offset + 2 * axis];
+            int hi = boxes[offset + 2 * axis + 1];
+            if(lo > hi) return Integer.MAX_VALUE;
+
+            int c = coordinate(colorIndex,axis);
+            closest = (closest << 8) | Math.max(lo,Math.min(c,hi));
+        }
+
+        return NBitColors.hellingerDist(table.color(colorIndex),closest);
+    }
+
 }
 
-class KullbackDistEvaluator implements Evaluator
+class KullbackDistEvaluator implements SliceEvaluator, BoxBoundedEvaluator
 {
 
-    public int evaluate(int color, List<Integer> nColors) {
+    private PaletteTable table;
 
+    public KullbackDistEvaluator(PaletteTable table) {
+        this.table = table;
+    }
+
+    public int evaluate(int color, int[] nColors, int offset, int count) {
+
+        int min = Integer.MAX_VALUE;
+        for(int i = offset; i < offset + count; i++) {
+            int dist = NBitColors.kullbackDist(color,nColors[i]);
+            if(dist < min) min = dist;
+        }
+
+        return min;
+    }
+
+    public int evaluateIndices(int colorIndex, int[] nIndices, int offset, int count) {
+
+        int color = table.color(colorIndex);
         int min = Integer.MAX_VALUE;
-        for(int neigh : nColors) {
-            int dist = NBitColors.kullbackDist(color,neigh);
+        for(int i = offset; i < offset + count; i++) {
+            int dist = NBitColors.kullbackDist(color,table.color(nIndices[i]));
             if(dist < min) min = dist;
         }
 
         return min;
     }
 
+    public int coordinate(int colorIndex, int axis) {
+        return (table.color(colorIndex) >> (16 - 8 * axis)) & 0xFF;
+    }
+
+    // As computed, the divergence only takes the blue channel into account
+    // and is convex in the neighbour's blue with its minimum at color's blue;
+    // red and green only add the neighbour's channel. The smallest red and
+    // green of the box and the blue closest to color's give a lower bound.
+    public int lowerBound(int colorIndex, int[] boxes, int offset) {
+
+        int closest = 0;
+        for(int axis = 0; axis < 3; axis++) {
+            int lo = boxes[offset + 2 * axis];
+            int hi = boxes[offset + 2 * axis + 1];
+            if(lo > hi) return Integer.MAX_VALUE;
+
+            int c = coordinate(colorIndex,axis);
+            closest = (closest << 8) | (axis == 2 ? Math.max(lo,Math.min(c,hi)) : lo);
+        }
+
+        return NBitColors.kullbackDist(table.color(colorIndex),closest);
+    }
+
 }
 
-class HueEvaluator implements Evaluator
+class HueEvaluator implements SliceEvaluator, BoxBoundedEvaluator, PropertyDistanceEvaluator
 {
-    public int evaluate(int color, List<Integer> nColors)
+    private int[] hue;
+
+    public HueEvaluator(PaletteTable table)
     {
+        this.hue = table.property(ColorProperty.HUE);
+    }
+
+    public int evaluate(int color, int[] nColors, int offset, int count)
+    {
+        int key = NBitColors.hue(color);
         int min = Integer.MAX_VALUE;
 
-        for(int n : nColors)
+        for(int i = offset; i < offset + count; i++)
         {
-            int diff = NBitColors.hue(color) - NBitColors.hue(n);
+            int diff = key - NBitColors.hue(nColors[i]);
             diff = Math.abs(diff);
 
             if(diff < min)
@@ -436,4 +1238,39 @@ class HueEvaluator implements Evaluator
 
         return min;
     }
+
+    public int evaluateIndices(int colorIndex, int[] nIndices, int offset, int count)
+    {
+        int key = hue[colorIndex];
+        int min = Integer.MAX_VALUE;
+
+        for(int i = offset; i < offset + count; i++)
+        {
+            int diff = key - hue[nIndices[i]];
+            diff = Math.abs(diff);
+
+            if(diff < min)
+            {
+                min = diff;
+            }
+        }
+
+        return min;
+    }
+
+    public int property(int colorIndex)
+    {
+        return hue[colorIndex];
+    }
+
+    public int coordinate(int colorIndex, int axis)
+    {
+        return axis == 0 ? hue[colorIndex] : 0;
+    }
+
+    public int lowerBound(int colorIndex, int[] boxes, int offset)
+    {
+        int key = hue[colorIndex];
+        return Math.max(0,Math.max(boxes[offset] - key,key - boxes[offset + 1]));
+    }
 }
@@ -0,0 +1,70 @@
+
+package ch.infimum.olga;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+// Canvas stored in a memory mapped file, one native order int per pixel.
+// A single mapping is limited to 2GB, so the file is mapped in segments.
+public class MappedCanvas implements Canvas
+{
+    private static final int SEGMENT_BITS = 26;
+    private static final int SEGMENT_MASK = (1 << SEGMENT_BITS) - 1;
+
+    private int width;
+    private int height;
+    private IntBuffer[] segments;
+
+    public MappedCanvas(File file, int width, int height) throws IOException
+    {
+        this.width = width;
+        this.height = height;
+
+        long pixels = (long) width * height;
+        int count = (int) ((pixels + SEGMENT_MASK) >> SEGMENT_BITS);
+        segments = new IntBuffer[count];
+
+        RandomAccessFile raf = new RandomAccessFile(file,"rw");
+        try
+        {
+            raf.setLength(4 * pixels);
+            FileChannel channel = raf.getChannel();
+            for(int i = 0; i < count; i++)
+            {
+                long start = (long) i << SEGMENT_BITS;
+                long length = Math.min(1L << SEGMENT_BITS,pixels - start);
+                segments[i] = channel.map(FileChannel.MapMode.READ_WRITE,4 * start,4 * length)
+                                     .order(ByteOrder.nativeOrder()).asIntBuffer();
+            }
+        }
+        finally
+        {
+            // the mappings stay valid once the channel is closed
+            raf.close();
+        }
+    }
+
+    public int width()
+    {
+        return width;
+    }
+
+    public int height()
+    {
+        return height;
+    }
+
+    public int get(int pixel)
+    {
+        return segments[pixel >>> SEGMENT_BITS].get(pixel & SEGMENT_MASK);
+    }
+
+    public void set(int pixel, int value)
+    {
+        segments[pixel >>> SEGMENT_BITS].put(pixel & SEGMENT_MASK,value);
+    }
+}
@@ -0,0 +1,44 @@
+
+package ch.infimum.olga;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+// Allocates memory mapped canvases backed by temporary files in directory, so
+// that full 8 bit palettes fit on a modest heap. A file is deleted as soon as
+// it is mapped, the mapping keeps its pages until the canvas is collected,
+// so long running processes do not pile up files. Where a mapped file can
+// not be deleted it is left to the exit of the JVM.
+public class MappedCanvasAllocator implements CanvasAllocator
+{
+    private File directory;
+
+    public MappedCanvasAllocator(File directory)
+    {
+        this.directory = directory;
+    }
+
+    public Canvas allocate(int width, int height, int maxValue)
+    {
+        try
+        {
+            File file = File.createTempFile("olga-",".canvas",directory);
+            try
+            {
+                return new MappedCanvas(file,width,height);
+            }
+            finally
+            {
+                if(!file.delete())
+                {
+                    file.deleteOnExit();
+                }
+            }
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
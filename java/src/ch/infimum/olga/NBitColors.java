@@ -4,6 +4,9 @@ package ch.infimum.olga;
 import java.util.Iterator;
 import java.lang.Math;
 import java.util.*;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
 
 
 public class NBitColors implements Iterable<Integer>
@@ -39,16 +42,11 @@ public class NBitColors implements Iterable<Integer>
             @Override
             public Integer next()
             {
-                int color = currentColor;
-                int blue = color & channelMask;
-                color >>= bitsPerChannel;
-                int green = color & channelMask;
-                color >>= bitsPerChannel;
-                int red = color & channelMask;
+                int color = color(currentColor);
 
                 currentColor += 1;
 
-                return (red << (16 + additionalShift)) | (green << (8 + additionalShift)) | (blue << additionalShift);
+                return color;
             }
 
             @Override
@@ -59,6 +57,64 @@ public class NBitColors implements Iterable<Integer>
         };
     }
 
+    // The colors without boxing, in iteration order. The spliterator knows
+    // its size and splits evenly, so parallel streams work on the palette too.
+    @Override
+    public Spliterator.OfInt spliterator()
+    {
+        return indices().map(new IntUnaryOperator()
+        {
+            public int applyAsInt(int index)
+            {
+                return color(index);
+            }
+        }).spliterator();
+    }
+
+    public IntStream stream()
+    {
+        return StreamSupport.intStream(spliterator(),false);
+    }
+
+    // the palette indices 0 .. size()-1
+    public IntStream indices()
+    {
+        return IntStream.range(0,size());
+    }
+
+    public int bitsPerChannel()
+    {
+        return bitsPerChannel;
+    }
+
+    // number of colors in the palette
+    public int size()
+    {
+        return maxVal + 1;
+    }
+
+    // the index-th color of the palette, in iteration order
+    public int color(int index)
+    {
+        int blue = index & channelMask;
+        index >>= bitsPerChannel;
+        int green = index & channelMask;
+        index >>= bitsPerChannel;
+        int red = index & channelMask;
+
+        return (red << (16 + additionalShift)) | (green << (8 + additionalShift)) | (blue << additionalShift);
+    }
+
+    // position of a palette color in iteration order, the inverse of color()
+    public int index(int color)
+    {
+        int red = ((color & RED_MASK) >> 16) >> additionalShift;
+        int green = ((color & GREEN_MASK) >> 8) >> additionalShift;
+        int blue = (color & BLUE_MASK) >> additionalShift;
+
+        return (((red << bitsPerChannel) | green) << bitsPerChannel) | blue;
+    }
+
     public static int euclideanDistance(int color1, int color2)
     {
         int dRed = ((color1 & RED_MASK) >> 16) - ((color2 & RED_MASK) >> 16);
@@ -129,13 +185,8 @@ public class NBitColors implements Iterable<Integer>
         int green = (color & GREEN_MASK) >> 8;
         int blue = (color & BLUE_MASK);
 
-        int max = red;
-        int min = red;
-        List<Integer> d = Arrays.asList(red,green,blue);
-        for(int c : d) {
-            if(c > max) max = c;
-            if(c < min) min = c;
-        }
+        int max = Math.max(red,Math.max(green,blue));
+        int min = Math.min(red,Math.min(green,blue));
         
         return max-min;
     }
@@ -152,13 +203,8 @@ public class NBitColors implements Iterable<Integer>
         int saturation = 0;
         if(!( red == green && green == blue)) {
 
-            int max = red;
-            int min = red;
-            List<Integer> d = Arrays.asList(red,green,blue);
-            for(int c : d) {
-                if(c > max) max = c;
-                if(c < min) min = c;
-            }
+            int max = Math.max(red,Math.max(green,blue));
+            int min = Math.min(red,Math.min(green,blue));
 
             saturation = 255 * (max - min) / (max + min); //also try 255 * (M - m) / (511 - (M + m))
         }
@@ -179,11 +225,7 @@ public class NBitColors implements Iterable<Integer>
         int gd = Math.abs( ((color1 & GREEN_MASK) >> 8) - ((color2 & GREEN_MASK) >> 8) );
         int bd = Math.abs( (color1 & BLUE_MASK) - (color2 & BLUE_MASK) );
 
-        List<Integer> d = Arrays.asList(rd,gd,bd);
-        int cheby = rd;
-        for(int distance : d) {
-            if(distance > cheby) cheby = distance;
-        }
+        int cheby = Math.max(rd,Math.max(gd,bd));
 
         return cheby;
     }
@@ -234,53 +276,108 @@ public class NBitColors implements Iterable<Integer>
     // 
     public static int damerauDist(int color1, int color2) {
 
-        String compOne = color1+"";
-        String compTwo = color2+"";
+        DamerauScratch scratch = DAMERAU_SCRATCH.get();
+        int[] compOne = scratch.compOne;
+        int[] compTwo = scratch.compTwo;
+        int lengthOne = digits(color1,compOne);
+        int lengthTwo = digits(color2,compTwo);
 
         int res = -1;
-        int INF = compOne.length() + compTwo.length();
+        int INF = lengthOne + lengthTwo;
  
-        int[][] matrix = new int[compOne.length()+1][compTwo.length()+1];
+        int[][] matrix = scratch.matrix;
+        for (int i = 0; i <= lengthOne; i++)
+        {
+            Arrays.fill(matrix[i],0,lengthTwo+1,0);
+        }
  
-        for (int i = 0; i < compOne.length(); i++)
+        for (int i = 0; i < lengthOne; i++)
         {
             matrix[i+1][1] = i;
             matrix[i+1][0] = INF;
         }
  
-        for (int i = 0; i < compTwo.length(); i++)
+        for (int i = 0; i < lengthTwo; i++)
         {
             matrix[1][i+1] = i;
             matrix[0][i+1] = INF;
         }
  
-        int[] DA = new int[24];
+        int[] DA = scratch.DA;
  
         for (int i = 0; i < 24; i++)
         {
             DA[i] = 0;
         }
  
-        for (int i = 1; i < compOne.length(); i++)
+        for (int i = 1; i < lengthOne; i++)
         {
             int db = 0;
  
-            for (int j = 1; j < compTwo.length(); j++)
+            for (int j = 1; j < lengthTwo; j++)
             {
  
-                int i1 = DA[compTwo.indexOf(compTwo.charAt(j-1))];
+                int i1 = DA[indexOf(compTwo,compTwo[j-1])];
                 int j1 = db;
-                int d = ((compOne.charAt(i-1)==compTwo.charAt(j-1))?0:1);
+                int d = ((compOne[i-1]==compTwo[j-1])?0:1);
                 if (d == 0) db = j;
  
                 matrix[i+1][j+1] = Math.min(Math.min(matrix[i][j]+d, matrix[i+1][j]+1),Math.min(matrix[i][j+1]+1,matrix[i1][j1]+(i - i1-1)+1+(j-j1-1)));
             }
-            DA[compOne.indexOf(compOne.charAt(i-1))] = i;
+            DA[indexOf(compOne,compOne[i-1])] = i;
         }
          
-        return matrix[compOne.length()][compTwo.length()];
+        return matrix[lengthOne][lengthTwo];
+    }
+
+    // decimal digits of value, most significant first, as in value+""
+    private static int digits(int value, int[] out)
+    {
+        int length = 0;
+        do
+        {
+            out[length++] = value % 10;
+            value /= 10;
+        }
+        while(value != 0);
+
+        for(int i = 0, j = length - 1; i < j; i++, j--)
+        {
+            int t = out[i];
+            out[i] = out[j];
+            out[j] = t;
+        }
+
+        return length;
     }
 
+    private static int indexOf(int[] digits, int digit)
+    {
+        int i = 0;
+        while(digits[i] != digit)
+        {
+            i++;
+        }
+        return i;
+    }
+
+    private static class DamerauScratch
+    {
+        int[] compOne = new int[10];
+        int[] compTwo = new int[10];
+        int[][] matrix = new int[11][11];
+        int[] DA = new int[24];
+    }
+
+    private static final ThreadLocal<DamerauScratch> DAMERAU_SCRATCH = new ThreadLocal<DamerauScratch>()
+    {
+        @Override
+        protected DamerauScratch initialValue()
+        {
+            return new DamerauScratch();
+        }
+    };
+
     // Hellinger distance
     // http://en.wikipedia.org/wiki/Hellinger_distance
     public static int hellingerDist(int color1, int color2) {
@@ -308,12 +405,12 @@ public class NBitColors implements Iterable<Integer>
 
         int sp = red1 + green1 + blue1;
         int sq = red2 + green2 + blue2;
-        List<Integer> p = Arrays.asList(red1,green1,blue1);
-        List<Integer> q = Arrays.asList(red2,green2,blue2);
 
         double ln = 0;
         for(int i =0; i < 3; i++) {
-            ln = p.get(i)*Math.log((double)p.get(i)/(double)q.get(i));
+            int p = (i == 0) ? red1 : (i == 1) ? green1 : blue1;
+            int q = (i == 0) ? red2 : (i == 1) ? green2 : blue2;
+            ln = p*Math.log((double)p/(double)q);
         }
 
         return (int)(ln - sp + sq);
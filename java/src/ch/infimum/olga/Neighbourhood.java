@@ -0,0 +1,157 @@
+package ch.infimum.olga;
+
+// The neighbours of a y*width+x pixel index on a width x height canvas,
+// walked without allocating: the offsets are computed once, pixels at least
+// radius away from every edge use them as they are, and only pixels near an
+// edge check each neighbour against it.
+//
+// moore(r) is every pixel within Chebyshev distance r, moore(1) being the 8
+// surrounding pixels the generator has always used. vonNeumann(r) is every
+// pixel within taxicab distance r, vonNeumann(1) being the 4 pixels sharing
+// an edge. Both are symmetric: b is a neighbour of a if and only if a is one
+// of b.
+public class Neighbourhood
+{
+    private int width;
+    private int height;
+    private int radius;
+    private boolean moore;
+
+    private int[] dx;
+    private int[] dy;
+    private int[] offsets;
+
+    private Neighbourhood(int width, int height, int radius, boolean moore)
+    {
+        this.width = width;
+        this.height = height;
+        this.radius = radius;
+        this.moore = moore;
+
+        int count = 0;
+        int[] x = new int[(2 * radius + 1) * (2 * radius + 1)];
+        int[] y = new int[x.length];
+
+        // x outer and y inner, the order the generator has always visited
+        // neighbours in
+        for(int i = -radius; i <= radius; i++)
+        {
+            for(int j = -radius; j <= radius; j++)
+            {
+                if((i != 0 || j != 0) && within(i,j))
+                {
+                    x[count] = i;
+                    y[count] = j;
+                    count++;
+                }
+            }
+        }
+
+        dx = new int[count];
+        dy = new int[count];
+        offsets = new int[count];
+        for(int i = 0; i < count; i++)
+        {
+            dx[i] = x[i];
+            dy[i] = y[i];
+            offsets[i] = y[i] * width + x[i];
+        }
+    }
+
+    public static Neighbourhood moore(int width, int height, int radius)
+    {
+        return new Neighbourhood(width,height,radius,true);
+    }
+
+    public static Neighbourhood vonNeumann(int width, int height, int radius)
+    {
+        return new Neighbourhood(width,height,radius,false);
+    }
+
+    // the same shape on another canvas
+    public Neighbourhood resize(int width, int height)
+    {
+        return new Neighbourhood(width,height,radius,moore);
+    }
+
+    public int width()
+    {
+        return width;
+    }
+
+    public int height()
+    {
+        return height;
+    }
+
+    public int radius()
+    {
+        return radius;
+    }
+
+    // the number of neighbours of a pixel away from the edges
+    public int size()
+    {
+        return offsets.length;
+    }
+
+    // x and y offset of the i-th neighbour, in the order neighbours() visits
+    // them
+    public int dx(int i)
+    {
+        return dx[i];
+    }
+
+    public int dy(int i)
+    {
+        return dy[i];
+    }
+
+    // Writes the neighbours of pixel that lie on the canvas to into, which
+    // needs room for size() of them, and returns how many there are.
+    public int neighbours(int pixel, int[] into)
+    {
+        int x = pixel % width;
+        int y = pixel / width;
+
+        if(x >= radius && x < width - radius && y >= radius && y < height - radius)
+        {
+            for(int i = 0; i < offsets.length; i++)
+            {
+                into[i] = pixel + offsets[i];
+            }
+
+            return offsets.length;
+        }
+
+        int count = 0;
+        for(int i = 0; i < offsets.length; i++)
+        {
+            int newX = x + dx[i];
+            int newY = y + dy[i];
+
+            if(newX >= 0 && newX < width && newY >= 0 && newY < height)
+            {
+                into[count++] = newY * width + newX;
+            }
+        }
+
+        return count;
+    }
+
+    // a and b are the same pixel or neighbours
+    public boolean near(int a, int b)
+    {
+        return within(a % width - b % width,a / width - b / width);
+    }
+
+    private boolean within(int x, int y)
+    {
+        if(moore)
+        {
+            return Math.abs(x) <= radius && Math.abs(y) <= radius;
+        }
+
+        return Math.abs(x) + Math.abs(y) <= radius;
+    }
+}
@@ -0,0 +1,10 @@
+package ch.infimum.olga;
+
+// Drops the image, for generations that are only run for their side effects
+// such as frames, metrics or timing.
+public class NullSink implements ImageSink
+{
+    public void write(Rendering rendering)
+    {
+    }
+}
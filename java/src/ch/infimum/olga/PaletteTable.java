@@ -0,0 +1,168 @@
+
+package ch.infimum.olga;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+// Color properties of every color of an NBitColors palette, indexed by
+// NBitColors.index(). A property is computed the first time it is asked for
+// and kept for the lifetime of the table. Tables are immutable once built and
+// shared by all runs with the same bitsPerChannel through forBitsPerChannel().
+//
+// The table also measures distances between palette indices. Channels are
+// taken out of the index with shifts and the per channel differences, in 8 bit
+// units, come from tables over all pairs of channel values.
+public class PaletteTable
+{
+    // palettes with at least this many colors are built on the common pool
+    private static final int PARALLEL_SIZE = 1 << 15;
+    private static final int CHUNK = 1 << 12;
+
+    private static final ConcurrentMap<Integer,PaletteTable> TABLES = new ConcurrentHashMap<Integer,PaletteTable>();
+
+    private NBitColors palette;
+    private int[][] properties = new int[ColorProperty.values().length][];
+
+    private int bitsPerChannel;
+    private int channelMask;
+
+    // [(a << bitsPerChannel) | b] for channel values a and b
+    private int[] absoluteDifference;
+    private int[] squaredDifference;
+
+    public PaletteTable(int bitsPerChannel)
+    {
+        this.palette = new NBitColors(bitsPerChannel);
+        this.bitsPerChannel = bitsPerChannel;
+        this.channelMask = (1 << bitsPerChannel) - 1;
+
+        int additionalShift = 8 - bitsPerChannel;
+        int values = 1 << bitsPerChannel;
+        absoluteDifference = new int[values * values];
+        squaredDifference = new int[values * values];
+        for(int a = 0; a < values; a++)
+        {
+            for(int b = 0; b < values; b++)
+            {
+                int d = Math.abs((a << additionalShift) - (b << additionalShift));
+                absoluteDifference[(a << bitsPerChannel) | b] = d;
+                squaredDifference[(a << bitsPerChannel) | b] = d * d;
+            }
+        }
+    }
+
+    public static PaletteTable forBitsPerChannel(int bitsPerChannel)
+    {
+        return TABLES.computeIfAbsent(bitsPerChannel,new Function<Integer,PaletteTable>()
+        {
+            public PaletteTable apply(Integer bits)
+            {
+                return new PaletteTable(bits);
+            }
+        });
+    }
+
+    public NBitColors palette()
+    {
+        return palette;
+    }
+
+    public int color(int index)
+    {
+        return palette.color(index);
+    }
+
+    public int euclideanDistance(int index1, int index2)
+    {
+        return squaredDifference[red(index1,index2)] + squaredDifference[green(index1,index2)] + squaredDifference[blue(index1,index2)];
+    }
+
+    public int taxiCab(int index1, int index2)
+    {
+        return absoluteDifference[red(index1,index2)] + absoluteDifference[green(index1,index2)] + absoluteDifference[blue(index1,index2)];
+    }
+
+    public int chebyshevDist(int index1, int index2)
+    {
+        return Math.max(absoluteDifference[red(index1,index2)],
+                        Math.max(absoluteDifference[green(index1,index2)],absoluteDifference[blue(index1,index2)]));
+    }
+
+    // channel pairs for the difference tables
+    private int red(int index1, int index2)
+    {
+        return ((index1 >> (2 * bitsPerChannel)) << bitsPerChannel) | (index2 >> (2 * bitsPerChannel));
+    }
+
+    private int green(int index1, int index2)
+    {
+        return (((index1 >> bitsPerChannel) & channelMask) << bitsPerChannel) | ((index2 >> bitsPerChannel) & channelMask);
+    }
+
+    private int blue(int index1, int index2)
+    {
+        return ((index1 & channelMask) << bitsPerChannel) | (index2 & channelMask);
+    }
+
+    // property values by palette index, do not modify
+    public int[] property(ColorProperty property)
+    {
+        synchronized(properties)
+        {
+            int[] values = properties[property.ordinal()];
+            if(values == null)
+            {
+                values = new int[palette.size()];
+                Build build = new Build(property,values,0,values.length);
+                if(values.length >= PARALLEL_SIZE)
+                {
+                    ForkJoinPool.commonPool().invoke(build);
+                }
+                else
+                {
+                    build.compute();
+                }
+                properties[property.ordinal()] = values;
+            }
+
+            return values;
+        }
+    }
+
+    private class Build extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private ColorProperty property;
+        private int[] values;
+        private int from;
+        private int to;
+
+        Build(ColorProperty property, int[] values, int from, int to)
+        {
+            this.property = property;
+            this.values = values;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if(to - from <= CHUNK)
+            {
+                for(int i = from; i < to; i++)
+                {
+                    values[i] = property.of(palette.color(i));
+                }
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new Build(property,values,from,middle),new Build(property,values,middle,to));
+        }
+    }
+}
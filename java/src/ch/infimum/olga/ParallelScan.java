@@ -0,0 +1,129 @@
+
+package ch.infimum.olga;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+// Fork/join version of the frontier scan in ImageGenerator.
+//
+// Every candidate is packed as (value << 32 | pixel), so the smallest packed
+// long is the smallest value with ties going to the smallest pixel index, no
+// matter how the frontier was split or in which order the halves finish.
+public class ParallelScan extends RecursiveTask<Long>
+{
+    private static final long serialVersionUID = 1L;
+
+    public static final long NONE = Long.MAX_VALUE;
+
+    // below this many open pixels a scan is not worth splitting
+    public static final int THRESHOLD = 4096;
+
+    private static final int CHUNK = 1024;
+
+    private IndexedEvaluator evaluator;
+    private Frontier openSet;
+    private int color;
+    private int from;
+    private int to;
+    private LongAdder evaluations;
+
+    private ParallelScan(IndexedEvaluator evaluator, Frontier openSet, int color, int from, int to, LongAdder evaluations)
+    {
+        this.evaluator = evaluator;
+        this.openSet = openSet;
+        this.color = color;
+        this.from = from;
+        this.to = to;
+        this.evaluations = evaluations;
+    }
+
+    public static long best(ForkJoinPool pool, IndexedEvaluator evaluator, Frontier openSet, int color, LongAdder evaluations)
+    {
+        ParallelScan task = new ParallelScan(evaluator,openSet,color,0,openSet.size(),evaluations);
+        if(openSet.size() < THRESHOLD)
+        {
+            return task.compute();
+        }
+
+        return pool.invoke(task);
+    }
+
+    public static int pixel(long packed)
+    {
+        return (int) packed;
+    }
+
+    @Override
+    protected Long compute()
+    {
+        if(to - from <= CHUNK)
+        {
+            return scan();
+        }
+
+        int middle = (from + to) >>> 1;
+        ParallelScan left = new ParallelScan(evaluator,openSet,color,from,middle,evaluations);
+        ParallelScan right = new ParallelScan(evaluator,openSet,color,middle,to,evaluations);
+        left.fork();
+        long r = right.compute();
+        long l = left.join();
+
+        return Math.min(l,r);
+    }
+
+    // Same pruning as the scan in ImageGenerator, against the best of this
+    // part of the frontier.
+    private long scan()
+    {
+        BoundedEvaluator bounded = evaluator instanceof BoundedEvaluator ? (BoundedEvaluator) evaluator : null;
+        boolean boxed = openSet.bounded();
+
+        long best = NONE;
+        int bestValue = Integer.MAX_VALUE;
+        long evaluated = 0;
+        int[] slots = openSet.slots();
+        int stride = openSet.stride();
+        for(int i = from; i < to; i++)
+        {
+            if(boxed)
+            {
+                if(i % Frontier.BLOCK == 0 && openSet.blockLowerBound(color,i / Frontier.BLOCK) > bestValue)
+                {
+                    i += Frontier.BLOCK - 1;
+                    continue;
+                }
+                if(openSet.lowerBound(color,i) > bestValue)
+                {
+                    continue;
+                }
+            }
+
+            evaluated++;
+
+            int base = i * stride;
+            int val;
+            if(bounded != null)
+            {
+                val = bounded.evaluateBounded(color,slots,base + 1,slots[base],bestValue);
+            }
+            else
+            {
+                val = evaluator.evaluateIndices(color,slots,base + 1,slots[base]);
+            }
+
+            if(val != Integer.MAX_VALUE)
+            {
+                long packed = ((long) val << 32) | openSet.pixel(i);
+                if(packed < best)
+                {
+                    best = packed;
+                    bestValue = val;
+                }
+            }
+        }
+
+        evaluations.add(evaluated);
+        return best;
+    }
+}
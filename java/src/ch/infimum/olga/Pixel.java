@@ -75,7 +75,7 @@ public class Pixel
     @Override
     public int hashCode()
     {
-        return x ^ y;
+        return 31 * x + y;
     }
 
 }
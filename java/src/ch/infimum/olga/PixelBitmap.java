@@ -0,0 +1,36 @@
+
+package ch.infimum.olga;
+
+// One bit per pixel, packed 32 to an int of a canvas of words, so that the
+// bits can live wherever a CanvasAllocator puts them.
+public class PixelBitmap
+{
+    private Canvas words;
+
+    public PixelBitmap(CanvasAllocator allocator, int width, int height)
+    {
+        long pixels = (long) width * height;
+        int wordCount = (int) ((pixels + 31) >> 5);
+
+        // keep rows of words when they line up with the pixel rows
+        if(width % 32 == 0)
+        {
+            words = allocator.allocate(width / 32,height,-1);
+        }
+        else
+        {
+            words = allocator.allocate(wordCount,1,-1);
+        }
+    }
+
+    public boolean get(int pixel)
+    {
+        return (words.get(pixel >>> 5) & (1 << pixel)) != 0;
+    }
+
+    public void set(int pixel)
+    {
+        int word = pixel >>> 5;
+        words.set(word,words.get(word) | (1 << pixel));
+    }
+}
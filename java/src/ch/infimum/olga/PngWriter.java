@@ -0,0 +1,370 @@
+package ch.infimum.olga;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+// Writes a canvas of palette indices as an 8 bit RGB PNG, reading the canvas
+// a row at a time, so mapped canvases are never copied into an image.
+//
+// The image is cut into bands of rows that are filtered and deflated on the
+// pool at the same time, a few bands ahead of the one being written. Every
+// band is a raw deflate stream ending on a sync flush, which keeps it byte
+// aligned, primed with the last 32K of the band before it, so the bands
+// concatenate into one zlib stream that compresses about as well as a single
+// one would. The zlib checksum is combined from the bands' Adler-32s.
+// Filters are picked per row with the minimum sum of absolute differences
+// heuristic of libpng.
+public class PngWriter
+{
+    private static final byte[] SIGNATURE = {(byte) 137, 'P', 'N', 'G', '\r', '\n', 26, '\n'};
+
+    // the deflate window, and so the most of the previous band a band can use
+    private static final int WINDOW = 32 * 1024;
+
+    // uncompressed bytes per band
+    private static final int BAND_BYTES = 1 << 20;
+
+    private static final int ADLER_BASE = 65521;
+
+    private int level;
+    private ForkJoinPool pool;
+
+    // level as in Deflater, pool null for the common pool
+    public PngWriter(int level, ForkJoinPool pool)
+    {
+        if(level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)
+        {
+            throw new IllegalArgumentException("compression level " + level);
+        }
+
+        this.level = level;
+        this.pool = pool != null ? pool : ForkJoinPool.commonPool();
+    }
+
+    public void write(final Canvas canvas, final NBitColors palette, OutputStream stream) throws IOException
+    {
+        int width = canvas.width();
+        int height = canvas.height();
+        int lineLength = 1 + 3 * width;
+        final int bandRows = Math.max(1,BAND_BYTES / lineLength);
+        int bands = (height + bandRows - 1) / bandRows;
+
+        DataOutputStream out = new DataOutputStream(stream);
+        out.write(SIGNATURE);
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream ihdr = new DataOutputStream(header);
+        ihdr.writeInt(width);
+        ihdr.writeInt(height);
+        ihdr.writeByte(8);
+        ihdr.writeByte(2);
+        ihdr.writeByte(0);
+        ihdr.writeByte(0);
+        ihdr.writeByte(0);
+        chunk(out,"IHDR",header.toByteArray(),header.size());
+
+        // bounds the compressed bands waiting to be written
+        int ahead = 2 * pool.getParallelism();
+
+        Deque<ForkJoinTask<Band>> pending = new ArrayDeque<ForkJoinTask<Band>>();
+        int submitted = 0;
+        long adler = 1;
+        for(int written = 0; written < bands; written++)
+        {
+            while(submitted < bands && submitted - written < ahead)
+            {
+                final int from = submitted * bandRows;
+                final int to = Math.min(from + bandRows,height);
+                final boolean last = submitted == bands - 1;
+                pending.add(pool.submit(new Callable<Band>()
+                {
+                    public Band call()
+                    {
+                        return band(canvas,palette,from,to,last);
+                    }
+                }));
+                submitted++;
+            }
+
+            Band band = pending.remove().join();
+            adler = combine(adler,band.adler,band.length);
+
+            byte[] data = band.compressed;
+            int length = band.compressedLength;
+            if(written == bands - 1)
+            {
+                // the zlib trailer goes into the last chunk
+                if(data.length < length + 4)
+                {
+                    byte[] longer = new byte[length + 4];
+                    System.arraycopy(data,0,longer,0,length);
+                    data = longer;
+                }
+                data[length++] = (byte) (adler >>> 24);
+                data[length++] = (byte) (adler >>> 16);
+                data[length++] = (byte) (adler >>> 8);
+                data[length++] = (byte) adler;
+            }
+            chunk(out,"IDAT",data,length);
+        }
+
+        chunk(out,"IEND",new byte[0],0);
+        out.flush();
+    }
+
+    // The filtered rows from up to to, deflated. The first band starts with
+    // the zlib header, every other one with the previous band's last 32K as
+    // dictionary.
+    private Band band(Canvas canvas, NBitColors palette, int from, int to, boolean last)
+    {
+        int lineLength = 1 + 3 * canvas.width();
+        Rows rows = new Rows(canvas,palette);
+
+        Deflater deflater = new Deflater(level,true);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+        if(from == 0)
+        {
+            // CMF 0x78 is deflate with a 32K window, FLG 0x9C the default
+            // level flag with the check bits making CMF*256 + FLG a multiple
+            // of 31
+            compressed.write(0x78);
+            compressed.write(0x9C);
+        }
+        else
+        {
+            int dictionaryRows = Math.min(from,(WINDOW + lineLength - 1) / lineLength);
+            byte[] dictionary = rows.filter(from - dictionaryRows,from);
+            int length = Math.min(WINDOW,dictionary.length);
+            deflater.setDictionary(dictionary,dictionary.length - length,length);
+        }
+
+        byte[] raw = rows.filter(from,to);
+        Adler32 adler = new Adler32();
+        adler.update(raw,0,raw.length);
+
+        deflater.setInput(raw);
+        byte[] buffer = new byte[64 * 1024];
+        if(last)
+        {
+            deflater.finish();
+            while(!deflater.finished())
+            {
+                int n = deflater.deflate(buffer);
+                compressed.write(buffer,0,n);
+            }
+        }
+        else
+        {
+            int n;
+            do
+            {
+                n = deflater.deflate(buffer,0,buffer.length,Deflater.SYNC_FLUSH);
+                compressed.write(buffer,0,n);
+            }
+            while(n == buffer.length);
+        }
+        deflater.end();
+
+        Band band = new Band();
+        band.compressed = compressed.toByteArray();
+        band.compressedLength = band.compressed.length;
+        band.adler = adler.getValue();
+        band.length = raw.length;
+        return band;
+    }
+
+    // adler32_combine of zlib: the Adler-32 of two byte sequences one after
+    // the other, from the checksums of both and the length of the second.
+    private static long combine(long adler1, long adler2, long length2)
+    {
+        long remainder = length2 % ADLER_BASE;
+        long sum1 = adler1 & 0xFFFF;
+        long sum2 = (remainder * sum1) % ADLER_BASE;
+        sum1 += (adler2 & 0xFFFF) + ADLER_BASE - 1;
+        sum2 += ((adler1 >>> 16) & 0xFFFF) + ((adler2 >>> 16) & 0xFFFF) + ADLER_BASE - remainder;
+        if(sum1 >= ADLER_BASE)
+        {
+            sum1 -= ADLER_BASE;
+        }
+        if(sum1 >= ADLER_BASE)
+        {
+            sum1 -= ADLER_BASE;
+        }
+        if(sum2 >= 2L * ADLER_BASE)
+        {
+            sum2 -= 2L * ADLER_BASE;
+        }
+        if(sum2 >= ADLER_BASE)
+        {
+            sum2 -= ADLER_BASE;
+        }
+
+        return sum1 | (sum2 << 16);
+    }
+
+    private static void chunk(DataOutputStream out, String type, byte[] data, int length) throws IOException
+    {
+        byte[] name = type.getBytes("US-ASCII");
+
+        CRC32 crc = new CRC32();
+        crc.update(name);
+        crc.update(data,0,length);
+
+        out.writeInt(length);
+        out.write(name);
+        out.write(data,0,length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    private static class Band
+    {
+        byte[] compressed;
+        int compressedLength;
+        long adler;
+        long length;
+    }
+
+    // Filtered scanlines straight from the canvas.
+    private static class Rows
+    {
+        private Canvas canvas;
+        private NBitColors palette;
+
+        private byte[] previous;
+        private byte[] current;
+        private byte[][] candidates = new byte[5][];
+
+        Rows(Canvas canvas, NBitColors palette)
+        {
+            this.canvas = canvas;
+            this.palette = palette;
+
+            int length = 3 * canvas.width();
+            previous = new byte[length];
+            current = new byte[length];
+            for(int f = 0; f < candidates.length; f++)
+            {
+                candidates[f] = new byte[length];
+            }
+        }
+
+        // rows from up to to, each a filter type and the filtered row
+        byte[] filter(int from, int to)
+        {
+            int length = current.length;
+            byte[] lines = new byte[(to - from) * (1 + length)];
+
+            if(from > 0)
+            {
+                read(from - 1,previous);
+            }
+            else
+            {
+                Arrays.fill(previous,(byte) 0);
+            }
+
+            int offset = 0;
+            for(int y = from; y < to; y++)
+            {
+                read(y,current);
+
+                int best = pick();
+                lines[offset] = (byte) best;
+                System.arraycopy(candidates[best],0,lines,offset + 1,length);
+                offset += 1 + length;
+
+                byte[] swap = previous;
+                previous = current;
+                current = swap;
+            }
+
+            return lines;
+        }
+
+        private void read(int y, byte[] row)
+        {
+            int width = canvas.width();
+            int pixel = y * width;
+            for(int x = 0, i = 0; x < width; x++, i += 3)
+            {
+                int rgb = palette.color(canvas.get(pixel + x));
+                row[i] = (byte) (rgb >>> 16);
+                row[i + 1] = (byte) (rgb >>> 8);
+                row[i + 2] = (byte) rgb;
+            }
+        }
+
+        // fills the five candidates and returns the filter type with the
+        // smallest sum of the filtered bytes taken as signed values
+        private int pick()
+        {
+            byte[] none = candidates[0];
+            byte[] sub = candidates[1];
+            byte[] up = candidates[2];
+            byte[] average = candidates[3];
+            byte[] paeth = candidates[4];
+            long[] sums = new long[5];
+
+            for(int i = 0; i < current.length; i++)
+            {
+                int raw = current[i] & 0xFF;
+                int left = i >= 3 ? current[i - 3] & 0xFF : 0;
+                int above = previous[i] & 0xFF;
+                int upperLeft = i >= 3 ? previous[i - 3] & 0xFF : 0;
+
+                none[i] = (byte) raw;
+                sub[i] = (byte) (raw - left);
+                up[i] = (byte) (raw - above);
+                average[i] = (byte) (raw - ((left + above) >>> 1));
+                paeth[i] = (byte) (raw - paeth(left,above,upperLeft));
+
+                sums[0] += Math.abs(none[i]);
+                sums[1] += Math.abs(sub[i]);
+                sums[2] += Math.abs(up[i]);
+                sums[3] += Math.abs(average[i]);
+                sums[4] += Math.abs(paeth[i]);
+            }
+
+            int best = 0;
+            for(int f = 1; f < sums.length; f++)
+            {
+                if(sums[f] < sums[best])
+                {
+                    best = f;
+                }
+            }
+
+            return best;
+        }
+
+        private static int paeth(int left, int above, int upperLeft)
+        {
+            int p = left + above - upperLeft;
+            int pLeft = Math.abs(p - left);
+            int pAbove = Math.abs(p - above);
+            int pUpperLeft = Math.abs(p - upperLeft);
+
+            if(pLeft <= pAbove && pLeft <= pUpperLeft)
+            {
+                return left;
+            }
+            if(pAbove <= pUpperLeft)
+            {
+                return above;
+            }
+            return upperLeft;
+        }
+    }
+}
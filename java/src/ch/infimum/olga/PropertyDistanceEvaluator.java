@@ -0,0 +1,9 @@
+package ch.infimum.olga;
+
+// Evaluators whose value is the minimum over the neighbours of the absolute
+// difference of one scalar color property. Such placements can be answered by
+// a PropertyIndex.
+public interface PropertyDistanceEvaluator extends IndexedEvaluator
+{
+    public int property(int colorIndex);
+}
@@ -0,0 +1,216 @@
+package ch.infimum.olga;
+
+// The ColorIndex of PropertyDistanceEvaluators. The palette is sorted by the
+// property once, so that the colors sharing a property value form a bucket of
+// consecutive positions, and a segment tree over the positions keeps the
+// minimum key of every range.
+//
+// nearest(index) walks the tree to the closest keyed position below and above
+// the bucket of the query's value, which gives the smallest distance, and
+// returns the minimum key of the one or two buckets at that distance. Both
+// are O(log colors).
+public class PropertyIndex implements ColorIndex
+{
+    private PropertyDistanceEvaluator metric;
+
+    private int minimum;
+    private int maximum;
+
+    // buckets[v - minimum] is the first position with property v,
+    // buckets[maximum - minimum + 1] the number of colors
+    private int[] buckets;
+
+    // palette indices by position, and positions by palette index
+    private Canvas order;
+    private Canvas position;
+
+    // keys.get(leaves + position) for the colors, keys.get(node) the minimum
+    // of keys.get(2*node) and keys.get(2*node + 1)
+    private int leaves;
+    private Canvas keys;
+
+    private long evaluations;
+
+    public PropertyIndex(int colors, PropertyDistanceEvaluator metric)
+    {
+        this(colors,metric,new HeapCanvasAllocator());
+    }
+
+    public PropertyIndex(int colors, PropertyDistanceEvaluator metric, CanvasAllocator allocator)
+    {
+        this.metric = metric;
+
+        minimum = Integer.MAX_VALUE;
+        maximum = Integer.MIN_VALUE;
+        for(int i = 0; i < colors; i++)
+        {
+            minimum = Math.min(minimum,metric.property(i));
+            maximum = Math.max(maximum,metric.property(i));
+        }
+
+        // counting sort, property values span a few hundred to a few ten
+        // thousand values
+        buckets = new int[maximum - minimum + 2];
+        for(int i = 0; i < colors; i++)
+        {
+            buckets[metric.property(i) - minimum + 1]++;
+        }
+        for(int v = 1; v < buckets.length; v++)
+        {
+            buckets[v] += buckets[v - 1];
+        }
+
+        order = allocator.allocate(colors,1,colors - 1);
+        position = allocator.allocate(colors,1,colors - 1);
+        int[] next = buckets.clone();
+        for(int i = 0; i < colors; i++)
+        {
+            int p = next[metric.property(i) - minimum]++;
+            order.set(p,i);
+            position.set(i,p);
+        }
+
+        leaves = Integer.highestOneBit(Math.max(colors - 1,1)) << 1;
+        keys = allocator.allocate(2 * leaves,1,-1);
+        for(int node = 1; node < 2 * leaves; node++)
+        {
+            keys.set(node,NO_KEY);
+        }
+    }
+
+    public void setKey(int index, int key)
+    {
+        int node = leaves + position.get(index);
+        if(keys.get(node) == key)
+        {
+            return;
+        }
+        keys.set(node,key);
+
+        while(node > 1)
+        {
+            node >>= 1;
+            int min = Math.min(keys.get(2 * node),keys.get(2 * node + 1));
+            if(keys.get(node) == min)
+            {
+                return;
+            }
+            keys.set(node,min);
+        }
+    }
+
+    public int nearest(int index)
+    {
+        int value = metric.property(index);
+        int bucket = buckets[value - minimum];
+
+        int distance = Integer.MAX_VALUE;
+
+        int below = last(1,0,leaves,bucket);
+        if(below >= 0)
+        {
+            distance = value - metric.property(order.get(below));
+        }
+
+        int above = first(1,0,leaves,bucket);
+        if(above >= 0)
+        {
+            distance = Math.min(distance,metric.property(order.get(above)) - value);
+        }
+
+        if(distance == Integer.MAX_VALUE)
+        {
+            return NO_KEY;
+        }
+
+        int key = bucketMin(value - distance);
+        if(distance != 0)
+        {
+            key = Math.min(key,bucketMin(value + distance));
+        }
+
+        return key;
+    }
+
+    public long evaluations()
+    {
+        return evaluations;
+    }
+
+    // the last keyed position before end in node, which covers [from, to)
+    private int last(int node, int from, int to, int end)
+    {
+        evaluations++;
+        if(from >= end || keys.get(node) == NO_KEY)
+        {
+            return -1;
+        }
+
+        if(to - from == 1)
+        {
+            return from;
+        }
+
+        int middle = (from + to) >>> 1;
+        int p = last(2 * node + 1,middle,to,end);
+        if(p >= 0)
+        {
+            return p;
+        }
+
+        return last(2 * node,from,middle,end);
+    }
+
+    // the first keyed position from start on in node, which covers [from, to)
+    private int first(int node, int from, int to, int start)
+    {
+        evaluations++;
+        if(to <= start || keys.get(node) == NO_KEY)
+        {
+            return -1;
+        }
+
+        if(to - from == 1)
+        {
+            return from;
+        }
+
+        int middle = (from + to) >>> 1;
+        int p = first(2 * node,from,middle,start);
+        if(p >= 0)
+        {
+            return p;
+        }
+
+        return first(2 * node + 1,middle,to,start);
+    }
+
+    // the smallest key of the colors with property value
+    private int bucketMin(int value)
+    {
+        if(value < minimum || value > maximum)
+        {
+            return NO_KEY;
+        }
+
+        int min = NO_KEY;
+        int from = leaves + buckets[value - minimum];
+        int to = leaves + buckets[value - minimum + 1];
+        while(from < to)
+        {
+            evaluations++;
+            if((from & 1) == 1)
+            {
+                min = Math.min(min,keys.get(from++));
+            }
+            if((to & 1) == 1)
+            {
+                min = Math.min(min,keys.get(--to));
+            }
+            from >>= 1;
+            to >>= 1;
+        }
+
+        return min;
+    }
+}
@@ -0,0 +1,242 @@
+package ch.infimum.olga;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+// PNGs of names as Main renders them, kept in a bounded in-memory LRU and,
+// if a directory is given, in files named after the SHA-256 of the key. The
+// key is the name together with the Main.parameters() of it, so a change to
+// any of those renders again. Generators are only built for misses.
+//
+// Requests for a key that is being rendered wait for that render instead of
+// starting their own. Thread safe.
+public class RenderCache
+{
+    private File directory;
+    private ForkJoinPool scanPool;
+
+    private Map<String,byte[]> memory;
+    private ConcurrentMap<String,FutureTask<byte[]>> renders = new ConcurrentHashMap<String,FutureTask<byte[]>>();
+
+    private AtomicLong requests = new AtomicLong();
+    private AtomicLong memoryHits = new AtomicLong();
+    private AtomicLong diskHits = new AtomicLong();
+    private AtomicLong coalesced = new AtomicLong();
+    private AtomicLong rendered = new AtomicLong();
+    private AtomicLong renderNanos = new AtomicLong();
+    private AtomicLong maxRenderNanos = new AtomicLong();
+
+    // directory may be null for a memory only cache, scanPool as in
+    // ImageGenerator.setScanPool()
+    public RenderCache(final int memoryEntries, File directory, ForkJoinPool scanPool)
+    {
+        this.directory = directory;
+        this.scanPool = scanPool;
+
+        this.memory = new LinkedHashMap<String,byte[]>(16,0.75f,true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String,byte[]> eldest)
+            {
+                return size() > memoryEntries;
+            }
+        };
+
+        if(directory != null)
+        {
+            directory.mkdirs();
+        }
+    }
+
+    public byte[] png(final String name) throws IOException
+    {
+        requests.incrementAndGet();
+
+        final String key = key(name);
+
+        byte[] png = remembered(key);
+        if(png != null)
+        {
+            memoryHits.incrementAndGet();
+            return png;
+        }
+
+        FutureTask<byte[]> render = new FutureTask<byte[]>(new Callable<byte[]>()
+        {
+            public byte[] call() throws IOException
+            {
+                // a render of key may have finished and left renders between
+                // the lookup above and putIfAbsent below; it has been
+                // remembered before leaving
+                byte[] png = remembered(key);
+                if(png != null)
+                {
+                    memoryHits.incrementAndGet();
+                    return png;
+                }
+
+                return load(key,name);
+            }
+        });
+
+        FutureTask<byte[]> running = renders.putIfAbsent(key,render);
+        if(running != null)
+        {
+            coalesced.incrementAndGet();
+            render = running;
+        }
+        else
+        {
+            try
+            {
+                render.run();
+            }
+            finally
+            {
+                renders.remove(key,render);
+            }
+        }
+
+        try
+        {
+            return render.get();
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for " + name,e);
+        }
+        catch(ExecutionException e)
+        {
+            if(e.getCause() instanceof IOException)
+            {
+                throw (IOException) e.getCause();
+            }
+            if(e.getCause() instanceof RuntimeException)
+            {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("rendering " + name + " failed",e.getCause());
+        }
+    }
+
+    // One "key value" line per counter.
+    public String stats()
+    {
+        long requests = this.requests.get();
+        long hits = memoryHits.get() + diskHits.get();
+        long rendered = this.rendered.get();
+        int remembered;
+        synchronized(memory)
+        {
+            remembered = memory.size();
+        }
+
+        StringBuilder stats = new StringBuilder();
+        stats.append("requests ").append(requests).append('\n');
+        stats.append("memory_hits ").append(memoryHits.get()).append('\n');
+        stats.append("disk_hits ").append(diskHits.get()).append('\n');
+        stats.append("coalesced ").append(coalesced.get()).append('\n');
+        stats.append("renders ").append(rendered).append('\n');
+        stats.append("hit_rate ").append(String.format("%.3f",requests == 0 ? 0.0 : (double) hits / requests)).append('\n');
+        stats.append("render_ms_mean ").append(rendered == 0 ? 0 : renderNanos.get() / rendered / 1000000).append('\n');
+        stats.append("render_ms_max ").append(maxRenderNanos.get() / 1000000).append('\n');
+        stats.append("memory_entries ").append(remembered).append('\n');
+
+        return stats.toString();
+    }
+
+    private byte[] load(String key, String name) throws IOException
+    {
+        File file = directory == null ? null : new File(directory,key + ".png");
+        if(file != null && file.isFile())
+        {
+            byte[] png = Files.readAllBytes(file.toPath());
+            diskHits.incrementAndGet();
+            remember(key,png);
+            return png;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageGenerator generator = Main.generator(name);
+        generator.setScanPool(scanPool);
+        generator.setSink(new StreamSink(out));
+
+        long start = System.nanoTime();
+        generator.generate();
+        long nanos = System.nanoTime() - start;
+
+        rendered.incrementAndGet();
+        renderNanos.addAndGet(nanos);
+        long max = maxRenderNanos.get();
+        while(nanos > max && !maxRenderNanos.compareAndSet(max,nanos))
+        {
+            max = maxRenderNanos.get();
+        }
+
+        byte[] png = out.toByteArray();
+        if(file != null)
+        {
+            // written next to the final name and moved there, readers never
+            // see half a file
+            File partial = File.createTempFile(key,".partial",directory);
+            Files.write(partial.toPath(),png);
+            Files.move(partial.toPath(),file.toPath(),StandardCopyOption.ATOMIC_MOVE,StandardCopyOption.REPLACE_EXISTING);
+        }
+        remember(key,png);
+
+        return png;
+    }
+
+    private byte[] remembered(String key)
+    {
+        synchronized(memory)
+        {
+            return memory.get(key);
+        }
+    }
+
+    private void remember(String key, byte[] png)
+    {
+        synchronized(memory)
+        {
+            memory.put(key,png);
+        }
+    }
+
+    private static String key(String name)
+    {
+        String parameters = name + '\n' + Main.parameters(name);
+
+        try
+        {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(parameters.getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder();
+            for(byte b : digest)
+            {
+                key.append(String.format("%02x",b & 0xFF));
+            }
+
+            return key.toString();
+        }
+        catch(NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException("SHA-256 is missing",e);
+        }
+    }
+}
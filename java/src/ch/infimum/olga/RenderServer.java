@@ -0,0 +1,210 @@
+package ch.infimum.olga;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+// Serves names rendered as Main would on the loopback interface, through a
+// RenderCache. Usage:
+//
+//   RenderServer [-port n] [-cache directory] [-entries n] [-threads n]
+//
+//   GET /render?name=...   the PNG of name
+//   GET /stats             the cache counters, see RenderCache.stats()
+//
+// Without -cache nothing is kept on disk. -entries bounds the PNGs kept in
+// memory, 64 by default, -threads the requests served at the same time, as
+// many as there are cores by default.
+public class RenderServer
+{
+    private HttpServer server;
+    private ExecutorService requests;
+    private RenderCache cache;
+
+    public RenderServer(int port, RenderCache cache, int threads) throws IOException
+    {
+        this.cache = cache;
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(),port),0);
+        server.createContext("/render",new HttpHandler()
+        {
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                if(allowed(exchange))
+                {
+                    render(exchange);
+                }
+            }
+        });
+        server.createContext("/stats",new HttpHandler()
+        {
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                if(!allowed(exchange))
+                {
+                    return;
+                }
+
+                respond(exchange,200,"text/plain; charset=utf-8",RenderServer.this.cache.stats().getBytes(StandardCharsets.UTF_8));
+            }
+        });
+
+        requests = Executors.newFixedThreadPool(threads);
+        server.setExecutor(requests);
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        int port = 8080;
+        File directory = null;
+        int entries = 64;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        for(int i = 0; i + 1 < args.length; i += 2)
+        {
+            if(args[i].equals("-port"))
+            {
+                port = Integer.parseInt(args[i + 1]);
+            }
+            else if(args[i].equals("-cache"))
+            {
+                directory = new File(args[i + 1]);
+            }
+            else if(args[i].equals("-entries"))
+            {
+                entries = Integer.parseInt(args[i + 1]);
+            }
+            else if(args[i].equals("-threads"))
+            {
+                threads = Integer.parseInt(args[i + 1]);
+            }
+        }
+
+        RenderServer server = new RenderServer(port,new RenderCache(entries,directory,new ForkJoinPool()),threads);
+        server.start();
+
+        System.out.println("serving on http://localhost:" + server.port() + "/render?name=...");
+    }
+
+    public void start()
+    {
+        server.start();
+    }
+
+    // Stops accepting requests and waits at most delaySeconds for the ones
+    // being served.
+    public void stop(int delaySeconds)
+    {
+        server.stop(delaySeconds);
+        requests.shutdown();
+    }
+
+    public int port()
+    {
+        return server.getAddress().getPort();
+    }
+
+    private void render(HttpExchange exchange) throws IOException
+    {
+        String name;
+        try
+        {
+            name = parameter(exchange,"name");
+        }
+        catch(IllegalArgumentException e)
+        {
+            respond(exchange,400,"text/plain; charset=utf-8","malformed query\n".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+
+        if(name == null || name.isEmpty())
+        {
+            respond(exchange,400,"text/plain; charset=utf-8","name is missing\n".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+
+        byte[] png;
+        try
+        {
+            png = cache.png(name);
+        }
+        catch(IOException | RuntimeException e)
+        {
+            respond(exchange,500,"text/plain; charset=utf-8",("rendering failed: " + e + "\n").getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+
+        respond(exchange,200,"image/png",png);
+    }
+
+    // Only GET and HEAD are served, anything else gets a 405.
+    private static boolean allowed(HttpExchange exchange) throws IOException
+    {
+        String method = exchange.getRequestMethod();
+        if(method.equals("GET") || method.equals("HEAD"))
+        {
+            return true;
+        }
+
+        exchange.getResponseHeaders().set("Allow","GET, HEAD");
+        respond(exchange,405,"text/plain; charset=utf-8",(method + " is not allowed\n").getBytes(StandardCharsets.UTF_8));
+        return false;
+    }
+
+    // URLDecoder throws IllegalArgumentException on a malformed escape.
+    private static String parameter(HttpExchange exchange, String name) throws IOException
+    {
+        String query = exchange.getRequestURI().getRawQuery();
+        if(query == null)
+        {
+            return null;
+        }
+
+        for(String pair : query.split("&"))
+        {
+            int equals = pair.indexOf('=');
+            if(equals > 0 && pair.substring(0,equals).equals(name))
+            {
+                return URLDecoder.decode(pair.substring(equals + 1),"UTF-8");
+            }
+        }
+
+        return null;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String type, byte[] body) throws IOException
+    {
+        exchange.getResponseHeaders().set("Content-Type",type);
+        if(exchange.getRequestMethod().equals("HEAD"))
+        {
+            // headers only, a HEAD response has no body
+            exchange.getResponseHeaders().set("Content-Length",Integer.toString(body.length));
+            exchange.sendResponseHeaders(status,-1);
+            exchange.close();
+            return;
+        }
+
+        exchange.sendResponseHeaders(status,body.length);
+
+        OutputStream out = exchange.getResponseBody();
+        try
+        {
+            out.write(body);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+}
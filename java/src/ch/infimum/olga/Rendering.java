@@ -0,0 +1,145 @@
+package ch.infimum.olga;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// A finished image as ImageGenerator.render() leaves it: the canvas of palette
+// indices and the palette to read them with. Nothing is expanded to RGB until
+// one of the RGB forms is asked for, pixels() and bufferedImage() then share
+// one array and byteBuffer() is filled straight from the canvas.
+public class Rendering
+{
+    private static final int[] MASKS = {NBitColors.RED_MASK, NBitColors.GREEN_MASK, NBitColors.BLUE_MASK};
+
+    private Canvas canvas;
+    private NBitColors palette;
+    private int[] rgb;
+
+    public Rendering(Canvas canvas, NBitColors palette)
+    {
+        this.canvas = canvas;
+        this.palette = palette;
+    }
+
+    public int width()
+    {
+        return canvas.width();
+    }
+
+    public int height()
+    {
+        return canvas.height();
+    }
+
+    // palette indices by y*width+x, 0 being black
+    public Canvas canvas()
+    {
+        return canvas;
+    }
+
+    public NBitColors palette()
+    {
+        return palette;
+    }
+
+    // The canvas seen as an image, expanded to RGB as it is read. This is
+    // what the sinks encode.
+    public RenderedImage image()
+    {
+        return new CanvasImage(canvas,palette);
+    }
+
+    // 0xRRGGBB by y*width+x. The array is the one bufferedImage() is backed
+    // by, changes to it show there.
+    public int[] pixels()
+    {
+        if(rgb == null)
+        {
+            rgb = new int[canvas.width() * canvas.height()];
+            for(int i = 0; i < rgb.length; i++)
+            {
+                rgb[i] = palette.color(canvas.get(i));
+            }
+        }
+
+        return rgb;
+    }
+
+    // A TYPE_INT_RGB image over pixels(), without copying it.
+    public BufferedImage bufferedImage()
+    {
+        int[] pixels = pixels();
+        DataBufferInt buffer = new DataBufferInt(pixels,pixels.length);
+        WritableRaster raster = Raster.createPackedRaster(buffer,width(),height(),width(),MASKS,null);
+
+        return new BufferedImage(new DirectColorModel(24,MASKS[0],MASKS[1],MASKS[2]),raster,false,null);
+    }
+
+    // A direct buffer of width*height 0xRRGGBB ints in the given byte order,
+    // positioned at 0.
+    public ByteBuffer byteBuffer(ByteOrder order)
+    {
+        int pixels = canvas.width() * canvas.height();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(4 * pixels).order(order);
+        for(int i = 0; i < pixels; i++)
+        {
+            buffer.putInt(4 * i,palette.color(canvas.get(i)));
+        }
+
+        return buffer;
+    }
+
+    // The mean RGB distance between colored pixels next to each other,
+    // horizontally, vertically or diagonally: how smooth the image is, lower
+    // being better. Used to compare approximate generations with exact ones.
+    public double meanNeighbourDistance()
+    {
+        int width = canvas.width();
+        int height = canvas.height();
+
+        double sum = 0;
+        long pairs = 0;
+        for(int y = 0; y < height; y++)
+        {
+            for(int x = 0; x < width; x++)
+            {
+                int index = canvas.get(y * width + x);
+                if(index == 0)
+                {
+                    continue;
+                }
+
+                int color = palette.color(index);
+
+                // every pair once, from its upper or left pixel
+                for(int dy = 0; dy <= 1; dy++)
+                {
+                    for(int dx = -1; dx <= 1; dx++)
+                    {
+                        int nx = x + dx;
+                        int ny = y + dy;
+                        if((dy == 0 && dx < 1) || nx < 0 || nx >= width || ny >= height)
+                        {
+                            continue;
+                        }
+
+                        int neighbour = canvas.get(ny * width + nx);
+                        if(neighbour != 0)
+                        {
+                            sum += Math.sqrt(NBitColors.euclideanDistance(color,palette.color(neighbour)));
+                            pairs++;
+                        }
+                    }
+                }
+            }
+        }
+
+        return pairs == 0 ? 0 : sum / pairs;
+    }
+}
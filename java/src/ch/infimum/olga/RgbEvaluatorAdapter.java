@@ -0,0 +1,41 @@
+
+package ch.infimum.olga;
+
+// Lets a SliceEvaluator be used on palette indices by expanding them to RGB
+// in a per thread buffer.
+public class RgbEvaluatorAdapter implements IndexedEvaluator
+{
+    private SliceEvaluator evaluator;
+    private NBitColors palette;
+
+    private ThreadLocal<int[]> buffer = new ThreadLocal<int[]>()
+    {
+        @Override
+        protected int[] initialValue()
+        {
+            return new int[Frontier.SLOTS];
+        }
+    };
+
+    public RgbEvaluatorAdapter(SliceEvaluator evaluator, NBitColors palette)
+    {
+        this.evaluator = evaluator;
+        this.palette = palette;
+    }
+
+    public int evaluateIndices(int colorIndex, int[] neighbouringIndices, int offset, int count)
+    {
+        int[] colors = buffer.get();
+        if(colors.length < count)
+        {
+            colors = new int[count];
+            buffer.set(colors);
+        }
+        for(int i = 0; i < count; i++)
+        {
+            colors[i] = palette.color(neighbouringIndices[offset + i]);
+        }
+
+        return evaluator.evaluate(palette.color(colorIndex),colors,0,count);
+    }
+}
@@ -0,0 +1,60 @@
+package ch.infimum.olga;
+
+import java.util.concurrent.ForkJoinPool;
+
+// Renders name as Main would, once scanning the whole frontier and once for
+// every given sample size with the given beam, and reports the speedup of
+// each sampled image against its cost in quality: the mean distance between
+// neighbouring colors and how much above the exact image's it is. The exact
+// image is rendered twice, only the second time is timed. Usage:
+//
+//   SampleReport name beam samples ...
+public class SampleReport
+{
+    public static void main(String[] args)
+    {
+        if(args.length < 3)
+        {
+            System.out.println("please provide a name, a beam and some sample sizes as arguments.");
+            return;
+        }
+
+        String name = args[0];
+        int beam = Integer.parseInt(args[1]);
+        ForkJoinPool scanPool = new ForkJoinPool();
+
+        // the first render warms the JVM up, timing it would count the
+        // warm-up against the exact scan
+        double expected = render(name,0,0,scanPool).meanNeighbourDistance();
+
+        long start = System.nanoTime();
+        render(name,0,0,scanPool);
+        long referenceNanos = System.nanoTime() - start;
+
+        System.out.println(String.format("%8s %8s %8s %10s %8s","samples","ms","speedup","distance","cost"));
+        System.out.println(String.format("%8s %8d %8.2f %10.2f %7.2f%%","all",referenceNanos / 1000000,1.0,expected,0.0));
+
+        for(int i = 2; i < args.length; i++)
+        {
+            int samples = Integer.parseInt(args[i]);
+
+            start = System.nanoTime();
+            double actual = render(name,samples,beam,scanPool).meanNeighbourDistance();
+            long nanos = System.nanoTime() - start;
+
+            System.out.println(String.format("%8d %8d %8.2f %10.2f %7.2f%%",samples,nanos / 1000000,(double) referenceNanos / nanos,actual,
+                                             100.0 * (actual - expected) / expected));
+        }
+
+        scanPool.shutdown();
+    }
+
+    private static Rendering render(String name, int samples, int beam, ForkJoinPool scanPool)
+    {
+        ImageGenerator generator = Main.generator(name);
+        generator.setScanPool(scanPool);
+        generator.setSampling(samples,beam);
+
+        return generator.render();
+    }
+}
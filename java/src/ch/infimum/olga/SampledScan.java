@@ -0,0 +1,184 @@
+package ch.infimum.olga;
+
+import java.util.Arrays;
+
+// Approximate frontier scan for previews: instead of every open pixel it
+// evaluates samples of them, spread evenly over the frontier, together with
+// the beam best pixels of the previous color that are still open.
+// Candidates are packed like in ParallelScan, so ties still go to the
+// smallest pixel index. A frontier of at most samples pixels is scanned
+// completely, which gives the exact result.
+//
+// Where the samples start follows from a hash of the color, which the color
+// permutation already makes random, so no rng is drawn from and the fallback
+// pixels are those of the exact scan.
+//
+// Only the beam + 1 best candidates are kept, in a max heap, and a pixel has
+// to beat the worst of them once the heap is full. Bounded evaluators and box
+// bounds prune against that like the exact scan does against its best value.
+public class SampledScan
+{
+    private static final int GOLDEN = 0x9E3779B9;
+
+    private int samples;
+
+    private int[] beam;
+    private int beamSize;
+
+    private long[] heap;
+    private int heapSize;
+
+    private long evaluations;
+
+    public SampledScan(int samples, int beam)
+    {
+        if(samples < 1 || beam < 0)
+        {
+            throw new IllegalArgumentException(samples + " samples and a beam of " + beam);
+        }
+
+        this.samples = samples;
+        this.beam = new int[beam];
+        this.heap = new long[beam + 1];
+    }
+
+    // The best candidate found for color, packed, or ParallelScan.NONE.
+    public long best(IndexedEvaluator evaluator, Frontier openSet, int color)
+    {
+        BoundedEvaluator bounded = evaluator instanceof BoundedEvaluator ? (BoundedEvaluator) evaluator : null;
+        int size = openSet.size();
+        heapSize = 0;
+
+        for(int b = 0; b < beamSize; b++)
+        {
+            int i = openSet.position(beam[b]);
+            if(i >= 0)
+            {
+                evaluate(evaluator,bounded,openSet,color,i);
+            }
+        }
+
+        if(size <= samples)
+        {
+            for(int i = 0; i < size; i++)
+            {
+                evaluate(evaluator,bounded,openSet,color,i);
+            }
+        }
+        else
+        {
+            double step = (double) size / samples;
+            double start = ((color * GOLDEN) >>> 1) / (double) (1L << 31) * step;
+            for(int s = 0; s < samples; s++)
+            {
+                evaluate(evaluator,bounded,openSet,color,(int) (start + s * step));
+            }
+        }
+
+        if(heapSize == 0)
+        {
+            beamSize = 0;
+            return ParallelScan.NONE;
+        }
+
+        // the best one is placed, the next ones are kept for the next color;
+        // a beam pixel may have been sampled again
+        Arrays.sort(heap,0,heapSize);
+        beamSize = 0;
+        for(int c = 1; c < heapSize; c++)
+        {
+            if(heap[c] != heap[c - 1])
+            {
+                beam[beamSize++] = ParallelScan.pixel(heap[c]);
+            }
+        }
+
+        return heap[0];
+    }
+
+    // open pixels evaluated so far
+    public long evaluations()
+    {
+        return evaluations;
+    }
+
+    private void evaluate(IndexedEvaluator evaluator, BoundedEvaluator bounded, Frontier openSet, int color, int i)
+    {
+        boolean full = heapSize == heap.length;
+        int bound = full ? (int) (heap[0] >> 32) : Integer.MAX_VALUE;
+        if(full && openSet.bounded() && openSet.lowerBound(color,i) > bound)
+        {
+            return;
+        }
+
+        evaluations++;
+
+        int[] slots = openSet.slots();
+        int base = i * openSet.stride();
+        int val;
+        if(bounded != null)
+        {
+            val = bounded.evaluateBounded(color,slots,base + 1,slots[base],bound);
+        }
+        else
+        {
+            val = evaluator.evaluateIndices(color,slots,base + 1,slots[base]);
+        }
+
+        if(val == Integer.MAX_VALUE)
+        {
+            return;
+        }
+
+        long packed = ((long) val << 32) | openSet.pixel(i);
+        if(!full)
+        {
+            heap[heapSize] = packed;
+            up(heapSize++);
+        }
+        else if(packed < heap[0])
+        {
+            heap[0] = packed;
+            down(0);
+        }
+    }
+
+    private void up(int i)
+    {
+        while(i > 0 && heap[(i - 1) / 2] < heap[i])
+        {
+            swap(i,(i - 1) / 2);
+            i = (i - 1) / 2;
+        }
+    }
+
+    private void down(int i)
+    {
+        while(true)
+        {
+            int largest = i;
+            for(int child = 2 * i + 1; child <= 2 * i + 2 && child < heapSize; child++)
+            {
+                if(heap[child] > heap[largest])
+                {
+                    largest = child;
+                }
+            }
+
+            if(largest == i)
+            {
+                return;
+            }
+
+            swap(i,largest);
+            i = largest;
+        }
+    }
+
+    private void swap(int a, int b)
+    {
+        long t = heap[a];
+        heap[a] = heap[b];
+        heap[b] = t;
+    }
+}
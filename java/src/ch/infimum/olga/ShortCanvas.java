@@ -0,0 +1,38 @@
+
+package ch.infimum.olga;
+
+// Canvas for values that fit in 16 unsigned bits, such as the palette
+// indices of up to 5 bits per channel.
+public class ShortCanvas implements Canvas
+{
+    private int width;
+    private int height;
+    private short[] pixels;
+
+    public ShortCanvas(int width, int height)
+    {
+        this.width = width;
+        this.height = height;
+        this.pixels = new short[width * height];
+    }
+
+    public int width()
+    {
+        return width;
+    }
+
+    public int height()
+    {
+        return height;
+    }
+
+    public int get(int pixel)
+    {
+        return pixels[pixel] & 0xFFFF;
+    }
+
+    public void set(int pixel, int value)
+    {
+        pixels[pixel] = (short) value;
+    }
+}
@@ -0,0 +1,38 @@
+package ch.infimum.olga;
+
+import java.util.Random;
+
+// The palette indices shuffled with the same swaps as Collections.shuffle,
+// kept in a canvas of the given allocator. This is the order generate() has
+// always used.
+public class ShuffledPermutation implements ColorPermutation
+{
+    private Canvas indices;
+
+    public ShuffledPermutation(int size, Random rng, CanvasAllocator allocator)
+    {
+        indices = allocator.allocate(size,1,size - 1);
+        for(int i = 0; i < size; i++)
+        {
+            indices.set(i,i);
+        }
+
+        for(int i = size; i > 1; i--)
+        {
+            int j = rng.nextInt(i);
+            int t = indices.get(i - 1);
+            indices.set(i - 1,indices.get(j));
+            indices.set(j,t);
+        }
+    }
+
+    public int size()
+    {
+        return indices.width();
+    }
+
+    public int get(int position)
+    {
+        return indices.get(position);
+    }
+}
@@ -0,0 +1,9 @@
+
+package ch.infimum.olga;
+
+// Allocation free variant of Evaluator. The neighbouring colors are the count
+// values of neighbouringColors starting at offset.
+public interface SliceEvaluator
+{
+    public int evaluate(int color, int[] neighbouringColors, int offset, int count);
+}
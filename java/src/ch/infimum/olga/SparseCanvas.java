@@ -0,0 +1,89 @@
+package ch.infimum.olga;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// A canvas made of TILE x TILE tiles that are only allocated once a non zero
+// value is written to them. Untouched tiles read as 0 without being
+// allocated, so memory follows the part of the canvas in use rather than its
+// area. Tiles are published atomically, so regions that do not overlap can
+// still be written from different threads.
+public class SparseCanvas implements Canvas
+{
+    public static final int TILE = 64;
+
+    private static final int SHIFT = 6;
+    private static final int MASK = TILE - 1;
+
+    private int width;
+    private int height;
+    private int tileColumns;
+    private AtomicReferenceArray<int[]> tiles;
+    private AtomicInteger allocated = new AtomicInteger();
+
+    public SparseCanvas(int width, int height)
+    {
+        this.width = width;
+        this.height = height;
+        this.tileColumns = (width + MASK) >> SHIFT;
+        this.tiles = new AtomicReferenceArray<int[]>(tileColumns * ((height + MASK) >> SHIFT));
+    }
+
+    public int width()
+    {
+        return width;
+    }
+
+    public int height()
+    {
+        return height;
+    }
+
+    public int get(int pixel)
+    {
+        int x = pixel % width;
+        int y = pixel / width;
+
+        int[] tile = tiles.get((y >> SHIFT) * tileColumns + (x >> SHIFT));
+        if(tile == null)
+        {
+            return 0;
+        }
+
+        return tile[((y & MASK) << SHIFT) | (x & MASK)];
+    }
+
+    public void set(int pixel, int value)
+    {
+        int x = pixel % width;
+        int y = pixel / width;
+
+        int t = (y >> SHIFT) * tileColumns + (x >> SHIFT);
+        int[] tile = tiles.get(t);
+        if(tile == null)
+        {
+            if(value == 0)
+            {
+                return;
+            }
+
+            tile = new int[TILE * TILE];
+            if(tiles.compareAndSet(t,null,tile))
+            {
+                allocated.incrementAndGet();
+            }
+            else
+            {
+                tile = tiles.get(t);
+            }
+        }
+
+        tile[((y & MASK) << SHIFT) | (x & MASK)] = value;
+    }
+
+    // number of tiles allocated so far
+    public int tiles()
+    {
+        return allocated.get();
+    }
+}
@@ -0,0 +1,22 @@
+package ch.infimum.olga;
+
+// Sparse canvases for the structures with one entry per pixel (the canvas,
+// the closed bitmap and the frontier position index), whose memory then
+// follows the pixels the image grows over rather than the frame. Made for
+// non strict frames, four times as wide and high as the palette needs. The
+// one row structures, the color permutation and the color index, are dense
+// anyway and go on the heap.
+public class SparseCanvasAllocator implements CanvasAllocator
+{
+    private CanvasAllocator rows = new HeapCanvasAllocator();
+
+    public Canvas allocate(int width, int height, int maxValue)
+    {
+        if(height == 1)
+        {
+            return rows.allocate(width,height,maxValue);
+        }
+
+        return new SparseCanvas(width,height);
+    }
+}
@@ -0,0 +1,37 @@
+package ch.infimum.olga;
+
+import javax.imageio.ImageIO;
+import java.io.IOException;
+import java.io.OutputStream;
+
+// Writes the image to out as a PNG and leaves out open.
+public class StreamSink implements ImageSink
+{
+    private OutputStream out;
+    private PngWriter png;
+
+    public StreamSink(OutputStream out)
+    {
+        this(out,null);
+    }
+
+    // encoded by png instead of ImageIO if png is not null
+    public StreamSink(OutputStream out, PngWriter png)
+    {
+        this.out = out;
+        this.png = png;
+    }
+
+    public void write(Rendering rendering) throws IOException
+    {
+        if(png != null)
+        {
+            png.write(rendering.canvas(),rendering.palette(),out);
+        }
+        else if(!ImageIO.write(rendering.image(),"png",out))
+        {
+            throw new IOException("no PNG writer");
+        }
+        out.flush();
+    }
+}